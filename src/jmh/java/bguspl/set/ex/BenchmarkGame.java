@@ -0,0 +1,115 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.FlightRecorder;
+import bguspl.set.GameMetrics;
+import bguspl.set.LockProfiler;
+import bguspl.set.UserInterfaceDecorator;
+import bguspl.set.Util;
+import bguspl.set.UtilImpl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * A game for the benchmarks: the real table, dealer and players with no user interface, no delays and no freezes,
+ * driven by the benchmark threads instead of the game's own threads (which are never started).
+ */
+class BenchmarkGame {
+
+    final Env env;
+    final Table table;
+    final Dealer dealer;
+    final Player[] players;
+
+    /**
+     * @param players - the number of (computer) players.
+     * @param seed    - the seed of the dealer's and players' random streams.
+     */
+    BenchmarkGame(int players, long seed) {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        Properties properties = new Properties();
+        properties.setProperty("HumanPlayers", "0");
+        properties.setProperty("ComputerPlayers", Integer.toString(players));
+        properties.setProperty("PointFreezeSeconds", "0");
+        properties.setProperty("PenaltyFreezeSeconds", "0");
+        properties.setProperty("TableDelaySeconds", "0");
+        properties.setProperty("LogLevel", "OFF");
+        properties.setProperty("FlightRecorderEvents", "0");
+        properties.setProperty("Seed", Long.toString(seed));
+        Config config = new Config(logger, properties);
+        Util util = new UtilImpl(config);
+        GameMetrics metrics = new GameMetrics();
+        env = new Env(logger, config, new UserInterfaceDecorator(logger, util, null, metrics), util,
+                FlightRecorder.disabled(), metrics, LockProfiler.disabled(), config.newClock());
+
+        table = new Table(env);
+        this.players = new Player[players];
+        dealer = new Dealer(env, table, this.players);
+        for (int i = 0; i < players; i++)
+            this.players[i] = new Player(env, dealer, table, i, false);
+        dealer.refillTable();
+    }
+
+    /**
+     * @return - the cards on the table.
+     */
+    List<Integer> cardsOnTable() {
+        List<Integer> cards = new ArrayList<>();
+        for (Integer card : table.slotToCard)
+            if (card != null)
+                cards.add(card);
+        return cards;
+    }
+
+    /**
+     * Returns cards taken off the table to the bottom of the deck, so the deck never runs out.
+     */
+    void recycle(int[] cards) {
+        for (int card : cards)
+            dealer.getDeck().add(0, card);
+    }
+
+    /**
+     * @return - a legal set on the table (the table is dealt again until it has one).
+     */
+    int[] findSet() {
+        List<int[]> sets = env.util.findSets(cardsOnTable(), 1);
+        while (sets.isEmpty()) {
+            recycle(table.clearTable());
+            dealer.refillTable();
+            sets = env.util.findSets(cardsOnTable(), 1);
+        }
+        return sets.get(0);
+    }
+
+    /**
+     * @return - cards on the table that are not a legal set.
+     */
+    int[] findNonSet() {
+        List<Integer> onTable = cardsOnTable();
+        int[] cards = new int[env.config.featureSize];
+        for (int first = 0; first + cards.length <= onTable.size(); first++) {
+            for (int i = 0; i < cards.length; i++)
+                cards[i] = onTable.get(first + i);
+            if (!env.util.testSet(cards))
+                return cards;
+        }
+        throw new IllegalStateException("every card combination on the table is a set: " + Arrays.toString(cards));
+    }
+
+    /**
+     * @return - the slots of cards on the table.
+     */
+    int[] slotsOf(int[] cards) {
+        int[] slots = new int[cards.length];
+        for (int i = 0; i < cards.length; i++)
+            slots[i] = table.cardToSlot[cards[i]];
+        return slots;
+    }
+}
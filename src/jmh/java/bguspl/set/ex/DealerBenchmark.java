@@ -0,0 +1,125 @@
+package bguspl.set.ex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of the dealer's critical path: judging a check (a penalty, or a point that replaces the set's cards under
+ * removeCardsLock), refilling emptied slots, and judging points while other players keep pressing keys.
+ * The operations that change the table are prepared per invocation (a check to judge, slots to refill), outside the
+ * measured time; the collected cards go back to the bottom of the deck so the deck never runs out.
+ * Run with java -jar target/benchmarks.jar DealerBenchmark -prof gc for the allocation per operation.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DealerBenchmark {
+
+    private static final int PLAYERS = 4;
+
+    private BenchmarkGame game;
+    private Check penaltyCheck;
+
+    @Setup
+    public void setUp() {
+        game = new BenchmarkGame(PLAYERS, 1);
+        penaltyCheck = new Check(game.findNonSet(), game.players[0]);
+    }
+
+    /**
+     * A legal set sent by player 0, judged by the measured operation.
+     */
+    @State(Scope.Thread)
+    public static class PendingPoint {
+        int[] cards;
+
+        @Setup(Level.Invocation)
+        public void send(DealerBenchmark benchmark) {
+            cards = benchmark.game.findSet();
+            benchmark.game.dealer.send(new Check(cards, benchmark.game.players[0]), true);
+        }
+
+        @TearDown(Level.Invocation)
+        public void recycle(DealerBenchmark benchmark) {
+            benchmark.game.recycle(cards);
+        }
+    }
+
+    /**
+     * Slots emptied before the measured refill.
+     */
+    @State(Scope.Thread)
+    public static class EmptiedSlots {
+        @Setup(Level.Invocation)
+        public void empty(DealerBenchmark benchmark) {
+            BenchmarkGame game = benchmark.game;
+            game.recycle(game.table.removeCards(game.slotsOf(game.findSet())));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class PressingPlayer {
+        int id;
+
+        @Setup
+        public void setUp(ThreadParams params) {
+            id = params.getSubgroupThreadIndex() + 1;
+        }
+    }
+
+    @Benchmark
+    @Group("judgePenalty")
+    public void judgePenalty() {
+        game.dealer.send(penaltyCheck, true);
+        game.dealer.judgeCheck();
+    }
+
+    @Benchmark
+    @Group("judgePoint")
+    public void judgePoint(PendingPoint point) {
+        game.dealer.judgeCheck();
+    }
+
+    @Benchmark
+    @Group("refill")
+    public void refill(EmptiedSlots emptied) {
+        game.dealer.refillTable();
+    }
+
+    @Benchmark
+    @Group("pointWhilePressing")
+    public void dealerJudgesPoint(PendingPoint point) {
+        game.dealer.judgeCheck();
+    }
+
+    /**
+     * Players 1..3 toggle a token on their own slot while player 0's sets are judged.
+     */
+    @Benchmark
+    @Group("pointWhilePressing")
+    @GroupThreads(PLAYERS - 1)
+    public int playersPressKeys(PressingPlayer player) {
+        Player pressing = game.players[player.id];
+        pressing.keyPressed(player.id);
+        pressing.keyPressed(player.id);
+        return pressing.getTokensPlaced().size();
+    }
+}
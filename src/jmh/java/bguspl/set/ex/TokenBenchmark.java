@@ -0,0 +1,81 @@
+package bguspl.set.ex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token toggle throughput under contention: four players placing and removing a token, on one slot (the slot's token
+ * deque), through the table (plus the ui and recorder hooks) and through Player.keyPressed (plus removeCardsLock, which
+ * every key press takes for writing). One operation is a place followed by a remove.
+ * Run with java -jar target/benchmarks.jar TokenBenchmark -prof gc for the allocation per operation.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenBenchmark {
+
+    private static final int PLAYERS = 4;
+
+    private BenchmarkGame game;
+
+    @State(Scope.Thread)
+    public static class PlayerThread {
+        int id;
+
+        @Setup
+        public void setUp(ThreadParams params) {
+            id = params.getGroupThreadIndex();
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        game = new BenchmarkGame(PLAYERS, 1);
+    }
+
+    @Benchmark
+    @Group("slot")
+    @GroupThreads(PLAYERS)
+    public boolean slotToggle(PlayerThread player) {
+        Slot slot = game.table.slots[0];
+        slot.placeToken(player.id);
+        return slot.removeToken(player.id);
+    }
+
+    @Benchmark
+    @Group("table")
+    @GroupThreads(PLAYERS)
+    public boolean tableToggle(PlayerThread player) {
+        game.table.placeToken(player.id, 0);
+        return game.table.removeToken(player.id, 0);
+    }
+
+    /**
+     * Each player presses the key of its own slot, so the players only contend on removeCardsLock.
+     */
+    @Benchmark
+    @Group("keyPressed")
+    @GroupThreads(PLAYERS)
+    public int keyPressedToggle(PlayerThread player) {
+        Player pressing = game.players[player.id];
+        pressing.keyPressed(player.id);
+        pressing.keyPressed(player.id);
+        return pressing.getTokensPlaced().size();
+    }
+}
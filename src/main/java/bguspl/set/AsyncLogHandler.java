@@ -0,0 +1,164 @@
+package bguspl.set;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * This class is a log handler that hands the records to a background writer thread through a bounded buffer, so the
+ * logging threads never format messages or write to files themselves.
+ * When the buffer is full the logging thread either waits for room (block) or the record is dropped (drop); the number
+ * of dropped records is logged once there is room again.
+ */
+public class AsyncLogHandler extends Handler {
+
+    /**
+     * The maximal number of records written (to the target handler) between two flushes.
+     */
+    private static final int BATCH_SIZE = 512;
+
+    private final Handler target;
+    private final BlockingQueue<LogRecord> buffer;
+    private final boolean blockWhenFull;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * The number of records accepted to the buffer and the number of records written, used by flush.
+     */
+    private final AtomicLong accepted = new AtomicLong();
+    private volatile long written;
+
+    private final Thread writer;
+    private volatile boolean closed;
+
+    /**
+     * @param target        - the handler the records are written to (by the writer thread only).
+     * @param capacity      - the number of records the buffer can hold.
+     * @param blockWhenFull - true to make logging threads wait when the buffer is full, false to drop their records.
+     */
+    public AsyncLogHandler(Handler target, int capacity, boolean blockWhenFull) {
+        this.target = target;
+        this.blockWhenFull = blockWhenFull;
+        buffer = new ArrayBlockingQueue<>(capacity);
+        setLevel(target.getLevel());
+        if (target.getFormatter() != null)
+            super.setFormatter(target.getFormatter());
+
+        writer = new Thread(this::writeLoop, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Replaces each handler of the logger with an asynchronous handler writing to it.
+     *
+     * @param logger - the logger.
+     * @param config - the game configuration (buffer size and overflow policy).
+     */
+    public static void install(Logger logger, Config config) {
+        for (Handler handler : logger.getHandlers()) {
+            if (handler instanceof AsyncLogHandler)
+                continue;
+            logger.removeHandler(handler);
+            logger.addHandler(new AsyncLogHandler(handler, config.logBufferSize, config.logBlockWhenFull));
+        }
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record))
+            return;
+
+        boolean queued;
+        if (blockWhenFull) {
+            try {
+                buffer.put(record);
+                queued = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                queued = false;
+            }
+        } else {
+            queued = buffer.offer(record);
+        }
+
+        if (queued)
+            accepted.incrementAndGet();
+        else
+            dropped.incrementAndGet();
+    }
+
+    private void writeLoop() {
+        List<LogRecord> batch = new ArrayList<>(BATCH_SIZE);
+        while (!closed || !buffer.isEmpty()) {
+            try {
+                batch.add(buffer.take());
+            } catch (InterruptedException e) {
+                if (closed)
+                    break;
+                continue;
+            }
+            buffer.drainTo(batch, BATCH_SIZE - 1);
+
+            long lost = dropped.getAndSet(0);
+            if (lost > 0)
+                target.publish(new LogRecord(Level.WARNING, "log buffer full: dropped " + lost + " log records"));
+            for (LogRecord record : batch)
+                target.publish(record);
+            if (buffer.isEmpty())
+                target.flush();
+
+            synchronized (this) {
+                written += batch.size();
+                notifyAll();
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Waits until all the records published so far were written, then flushes the target handler.
+     */
+    @Override
+    public void flush() {
+        long goal = accepted.get();
+        synchronized (this) {
+            while (written < goal && writer.isAlive()) {
+                try {
+                    wait(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        target.flush();
+    }
+
+    @Override
+    public void close() {
+        flush();
+        closed = true;
+        writer.interrupt();
+        try {
+            writer.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        target.close();
+    }
+
+    @Override
+    public synchronized void setFormatter(Formatter formatter) {
+        super.setFormatter(formatter);
+        target.setFormatter(formatter);
+    }
+}
@@ -0,0 +1,328 @@
+package bguspl.set;
+
+import bguspl.set.ex.Player;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * This class benchmarks the game engine headless: computer players play with no user interface, no freezes and no
+ * table delays, game after game, and the sets, checks, penalties and verdict latency are measured for each player count.
+ * Usage: java -cp target/classes bguspl.set.Benchmark [option=value ...] [Property=Value ...]
+ * The options are players (a comma separated list, default 2,4,8,16,32,64), warmup and duration (seconds, default 5
+ * and 20), seeds (a comma separated list, default 1) and config (a properties file the game settings are read from).
+ * Any other Property=Value overrides a game setting (e.g. Engine=actor). With format=csv the results are printed as
+ * CSV rows (header=false omits the header row), which is how {@link Sweep} runs its cells.
+ */
+public class Benchmark {
+
+    /**
+     * The game settings of a benchmark (before the config file and the overrides).
+     */
+    private static final String[][] DEFAULTS = {
+            {"HumanPlayers", "0"}, {"PointFreezeSeconds", "0"}, {"PenaltyFreezeSeconds", "0"},
+            {"TableDelaySeconds", "0"}, {"EndGamePauseSeconds", "0"}, {"LogLevel", "OFF"},
+            {"FlightRecorderEvents", "0"}, {"Hints", "false"}};
+
+    /**
+     * The columns of a CSV result row.
+     */
+    static final String CSV_HEADER = "players,seed,games,seconds,sets_per_s,checks_per_s,penalties_per_s,"
+            + "p50_us,p99_us,max_us,peak_threads,alloc_mb_per_s,gc_ms";
+
+    /**
+     * The usage of the JVM during a measurement: the peak number of live threads, the bytes allocated on the heap and
+     * the time spent collecting garbage. The allocated bytes are the growth of the heap plus what each collection freed
+     * (from the HotSpot collection notifications; -1 on other runtimes).
+     */
+    static final class JvmUsage implements NotificationListener {
+        private static final boolean SUPPORTED = isSupported();
+
+        private static boolean isSupported() {
+            try {
+                Class.forName("com.sun.management.GarbageCollectionNotificationInfo");
+                return true;
+            } catch (ClassNotFoundException | LinkageError e) {
+                return false;
+            }
+        }
+
+        private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        private final Set<String> heapPools = new HashSet<>();
+        private final LongAdder freed = new LongAdder();
+        private long startHeap;
+        private long startGcMillis;
+
+        int peakThreads;
+        long allocatedBytes;
+        long gcMillis;
+
+        void start() {
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+                if (pool.getType() == MemoryType.HEAP)
+                    heapPools.add(pool.getName());
+            if (SUPPORTED)
+                for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+                    if (gc instanceof NotificationEmitter)
+                        ((NotificationEmitter) gc).addNotificationListener(this, null, null);
+            threads.resetPeakThreadCount();
+            startHeap = heapUsed();
+            startGcMillis = gcMillis();
+        }
+
+        void stop() {
+            peakThreads = threads.getPeakThreadCount();
+            gcMillis = gcMillis() - startGcMillis;
+            allocatedBytes = SUPPORTED ? heapUsed() - startHeap + freed.sum() : -1;
+            if (SUPPORTED)
+                for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+                    if (gc instanceof NotificationEmitter) {
+                        try {
+                            ((NotificationEmitter) gc).removeNotificationListener(this);
+                        } catch (ListenerNotFoundException ignored) {
+                        }
+                    }
+        }
+
+        private long heapUsed() {
+            long used = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+                if (heapPools.contains(pool.getName()))
+                    used += pool.getUsage().getUsed();
+            return used;
+        }
+
+        private static long gcMillis() {
+            long millis = 0;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+                millis += Math.max(0, gc.getCollectionTime());
+            return millis;
+        }
+
+        @Override
+        public void handleNotification(Notification notification, Object handback) {
+            if (!notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION))
+                return;
+            GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            Map<String, MemoryUsage> before = info.getGcInfo().getMemoryUsageBeforeGc();
+            Map<String, MemoryUsage> after = info.getGcInfo().getMemoryUsageAfterGc();
+            for (String pool : heapPools)
+                if (before.containsKey(pool) && after.containsKey(pool))
+                    freed.add(before.get(pool).getUsed() - after.get(pool).getUsed());
+        }
+    }
+
+    /**
+     * The results of measuring one player count with one seed.
+     */
+    static final class Result {
+        final int players;
+        final long seed;
+        final int games;
+        final double seconds;
+        final long sets, checks, penalties;
+        final long p50Micros, p99Micros, maxMicros;
+        final JvmUsage usage;
+
+        Result(int players, long seed, int games, GameMetrics metrics, JvmUsage usage) {
+            this.players = players;
+            this.seed = seed;
+            this.games = games;
+            this.usage = usage;
+            seconds = metrics.getUptimeSeconds();
+            sets = metrics.getPoints();
+            checks = metrics.getChecks();
+            penalties = metrics.getPenalties();
+            p50Micros = metrics.getCheckLatencyP50Micros();
+            p99Micros = metrics.getCheckLatencyP99Micros();
+            maxMicros = metrics.getCheckLatencyMaxMicros();
+        }
+
+        double perSecond(long count) {
+            return seconds > 0 ? count / seconds : 0;
+        }
+
+        double allocatedMegabytesPerSecond() {
+            return usage.allocatedBytes < 0 ? -1 : perSecond(usage.allocatedBytes) / (1 << 20);
+        }
+
+        String toCsv() {
+            return String.format(Locale.ROOT, "%d,%d,%d,%.3f,%.3f,%.1f,%.1f,%d,%d,%d,%d,%.1f,%d", players, seed, games,
+                    seconds, perSecond(sets), perSecond(checks), perSecond(penalties), p50Micros, p99Micros, maxMicros,
+                    usage.peakThreads, allocatedMegabytesPerSecond(), usage.gcMillis);
+        }
+    }
+
+    private final Properties settings;
+    private final Logger logger;
+
+    /**
+     * Terminates the game running at the deadline of a run.
+     */
+    private final ScheduledExecutorService deadlines = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "benchmark-deadline");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param settings - the game settings (the player count and the seed are set by the benchmark).
+     */
+    public Benchmark(Properties settings) {
+        this.settings = settings;
+        logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+    }
+
+    /**
+     * Plays games with the given number of computer players: games until the warm-up is over, then games until the
+     * duration is over (the game running at the deadline is terminated).
+     *
+     * @param players  - the number of computer players.
+     * @param seed     - the seed of the games (each game gets its own seed drawn from it).
+     * @param warmup   - the warm-up time in milliseconds (not measured).
+     * @param duration - the measured time in milliseconds.
+     * @return - the measurements.
+     */
+    public Result run(int players, long seed, long warmup, long duration) throws InterruptedException {
+        Random seeds = new Random(seed);
+        GameMetrics metrics = new GameMetrics();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(warmup);
+        while (System.nanoTime() < deadline)
+            playGame(players, seeds.nextLong() | 1, metrics, deadline);
+
+        JvmUsage usage = new JvmUsage();
+        usage.start();
+        metrics.reset();
+        int games = 0;
+        deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(duration);
+        while (System.nanoTime() < deadline) {
+            playGame(players, seeds.nextLong() | 1, metrics, deadline);
+            games++;
+        }
+        Result result = new Result(players, seed, games, metrics, usage);
+        usage.stop();
+        return result;
+    }
+
+    /**
+     * Plays a game until it is over or the deadline has passed.
+     */
+    private void playGame(int players, long seed, GameMetrics metrics, long deadline) throws InterruptedException {
+        Properties properties = new Properties();
+        properties.putAll(settings);
+        properties.setProperty("ComputerPlayers", Integer.toString(players));
+        properties.setProperty("Seed", Long.toString(seed));
+        Config config = new Config(logger, properties);
+        Util util = new UtilImpl(config);
+        UserInterface ui = new UserInterfaceDecorator(logger, util, null, metrics);
+        Env env = new Env(logger, config, ui, util, FlightRecorder.disabled(), metrics, LockProfiler.disabled(),
+                config.newClock());
+
+        Game game = new Game(env, new Player[config.players], "dealer");
+        long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        ScheduledFuture<?> cut = deadlines.schedule(game::terminate, Math.max(remaining, 0), TimeUnit.MILLISECONDS);
+        try {
+            game.play();
+        } finally {
+            cut.cancel(false);
+        }
+    }
+
+    private static List<Long> parseList(String list) {
+        List<Long> values = new ArrayList<>();
+        for (String value : list.split(","))
+            if (!value.trim().isEmpty())
+                values.add(Long.parseLong(value.trim()));
+        return values;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Properties options = new Properties();
+        Properties overrides = new Properties();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals <= 0) {
+                System.out.println("usage: java bguspl.set.Benchmark [players=2,4,8] [warmup=5] [duration=20] [seeds=1,2,3]"
+                        + " [config=config.properties] [format=csv [header=false]] [Property=Value ...]");
+                return;
+            }
+            String key = arg.substring(0, equals);
+            (Character.isLowerCase(key.charAt(0)) ? options : overrides).setProperty(key, arg.substring(equals + 1));
+        }
+
+        Properties settings = new Properties();
+        for (String[] setting : DEFAULTS)
+            settings.setProperty(setting[0], setting[1]);
+        if (options.containsKey("config")) {
+            try (InputStream in = Files.newInputStream(Paths.get(options.getProperty("config")))) {
+                settings.load(in);
+            }
+        }
+        settings.putAll(overrides);
+
+        List<Long> playerCounts = parseList(options.getProperty("players", "2,4,8,16,32,64"));
+        List<Long> seeds = parseList(options.getProperty("seeds", "1"));
+        long warmup = (long) (Double.parseDouble(options.getProperty("warmup", "5")) * 1000);
+        long duration = (long) (Double.parseDouble(options.getProperty("duration", "20")) * 1000);
+        boolean csv = options.getProperty("format", "table").equals("csv");
+
+        if (csv && Boolean.parseBoolean(options.getProperty("header", "true")))
+            System.out.println(CSV_HEADER);
+        if (!csv) {
+            System.out.printf("engine: %s, warm-up: %ds, duration: %ds%n", settings.getProperty("Engine", "threaded"),
+                    warmup / 1000, duration / 1000);
+            System.out.printf("%7s %20s %6s %10s %10s %12s %10s %10s %8s %12s %8s%n", "players", "seed", "games",
+                    "sets/s", "checks/s", "penalties/s", "p50 us", "p99 us", "threads", "alloc MB/s", "gc ms");
+        }
+        Benchmark benchmark = new Benchmark(settings);
+        for (long players : playerCounts) {
+            double sets = 0, checks = 0, penalties = 0;
+            for (long seed : seeds) {
+                Result result = benchmark.run((int) players, seed, warmup, duration);
+                if (csv)
+                    System.out.println(result.toCsv());
+                else
+                    System.out.printf("%7d %20d %6d %10.2f %10.1f %12.1f %10d %10d %8d %12.1f %8d%n", result.players,
+                            result.seed, result.games, result.perSecond(result.sets), result.perSecond(result.checks),
+                            result.perSecond(result.penalties), result.p50Micros, result.p99Micros,
+                            result.usage.peakThreads, result.allocatedMegabytesPerSecond(), result.usage.gcMillis);
+                sets += result.perSecond(result.sets);
+                checks += result.perSecond(result.checks);
+                penalties += result.perSecond(result.penalties);
+            }
+            if (!csv && seeds.size() > 1)
+                System.out.printf("%7d %20s %6s %10.2f %10.1f %12.1f%n", players, "mean", "",
+                        sets / seeds.size(), checks / seeds.size(), penalties / seeds.size());
+        }
+    }
+}
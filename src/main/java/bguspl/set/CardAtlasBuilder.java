@@ -0,0 +1,55 @@
+package bguspl.set;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * This class packs all the card images of the configured deck into a single sprite atlas, so the user interface can
+ * load one resource instead of deckSize ones.
+ * Usage (from the project directory, after compiling): java -cp target/classes bguspl.set.CardAtlasBuilder [output directory]
+ * The output directory defaults to src/main/resources/cards; the deck is taken from config.properties.
+ */
+public class CardAtlasBuilder {
+
+    public static void main(String[] args) throws IOException {
+        File directory = new File(args.length > 0 ? args[0] : "src/main/resources/cards");
+        Config config = new Config(Logger.getLogger("CardAtlasBuilder"), "config.properties");
+
+        BufferedImage first = CardImages.read(CardImages.cardResource(config, 0));
+        int width = first.getWidth();
+        int height = first.getHeight();
+        int columns = (int) Math.ceil(Math.sqrt(config.deckSize));
+        int rows = (config.deckSize + columns - 1) / columns;
+
+        BufferedImage atlas = new BufferedImage(columns * width, rows * height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = atlas.createGraphics();
+        try {
+            for (int card = 0; card < config.deckSize; card++)
+                g.drawImage(CardImages.read(CardImages.cardResource(config, card)), card % columns * width, card / columns * height, null);
+        } finally {
+            g.dispose();
+        }
+
+        //noinspection ResultOfMethodCallIgnored
+        directory.mkdirs();
+        ImageIO.write(atlas, "png", new File(directory, new File(CardImages.ATLAS_IMAGE).getName()));
+
+        Properties properties = new Properties();
+        properties.setProperty("FeatureCount", Integer.toString(config.featureCount));
+        properties.setProperty("FeatureSize", Integer.toString(config.featureSize));
+        properties.setProperty("Columns", Integer.toString(columns));
+        properties.setProperty("CardWidth", Integer.toString(width));
+        properties.setProperty("CardHeight", Integer.toString(height));
+        try (OutputStream os = new FileOutputStream(new File(directory, new File(CardImages.ATLAS_PROPERTIES).getName()))) {
+            properties.store(os, "card sprite atlas (generated by CardAtlasBuilder)");
+        }
+        System.out.printf("Info: wrote a %dx%d card atlas of %d cards to %s.%n", columns, rows, config.deckSize, directory);
+    }
+}
@@ -0,0 +1,207 @@
+package bguspl.set;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static bguspl.set.UserInterfaceSwing.intInBaseToPaddedString;
+
+/**
+ * This class provides the card images, loading each one only when it is first needed.
+ * If a sprite atlas for the current deck is bundled (see CardAtlasBuilder) all the cards are sliced out of it,
+ * otherwise each card image is decoded on its own, in the background once prefetched.
+ * Decks with no bundled card images are drawn (see CardRenderer) on demand, into a size bounded LRU cache.
+ */
+class CardImages {
+
+    /**
+     * The resources of the sprite atlas (optional).
+     */
+    static final String ATLAS_IMAGE = "cards/atlas.png";
+    static final String ATLAS_PROPERTIES = "cards/atlas.properties";
+
+    private final Config config;
+    private final Logger logger;
+    private final Util util;
+
+    private final BufferedImage emptyCard;
+
+    /**
+     * The atlas holding all the cards of the deck (null if there is none).
+     */
+    private final BufferedImage atlas;
+    private final int atlasColumns;
+    private final int cardWidth;
+    private final int cardHeight;
+
+    /**
+     * The image of each card, once its loading has started.
+     */
+    private final AtomicReferenceArray<CompletableFuture<BufferedImage>> images;
+
+    /**
+     * Decodes the prefetched images in parallel.
+     */
+    private final ExecutorService loader;
+
+    /**
+     * Draws the cards if there are no bundled images for the deck (null otherwise).
+     */
+    private final CardRenderer renderer;
+
+    /**
+     * The cards drawn lately, least recently used first, and their total size.
+     */
+    private final LinkedHashMap<Integer, BufferedImage> rendered = new LinkedHashMap<>(16, 0.75f, true);
+    private final long renderedBytesLimit;
+    private long renderedBytes;
+
+    CardImages(Logger logger, Config config, Util util) {
+        this.logger = logger;
+        this.config = config;
+        this.util = util;
+        images = new AtomicReferenceArray<>(config.deckSize);
+        emptyCard = read("cards/empty_card.png");
+        renderedBytesLimit = config.cardCacheMegabytes * 1024L * 1024L;
+
+        // the atlas is used only if it was built for the configured deck
+        Properties atlasProperties = readAtlasProperties();
+        if (atlasProperties != null
+                && Integer.parseInt(atlasProperties.getProperty("FeatureCount", "0")) == config.featureCount
+                && Integer.parseInt(atlasProperties.getProperty("FeatureSize", "0")) == config.featureSize) {
+            atlasColumns = Integer.parseInt(atlasProperties.getProperty("Columns"));
+            cardWidth = Integer.parseInt(atlasProperties.getProperty("CardWidth"));
+            cardHeight = Integer.parseInt(atlasProperties.getProperty("CardHeight"));
+            atlas = read(ATLAS_IMAGE);
+        } else {
+            atlasColumns = cardWidth = cardHeight = 0;
+            atlas = null;
+        }
+        renderer = atlas == null && !hasBundledImages(config) ? new CardRenderer(config, emptyCard) : null;
+        if (renderer != null)
+            logger.info("no card images for a deck of " + config.deckSize + " cards, the cards will be drawn");
+
+        loader = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), task -> {
+            Thread thread = new Thread(task, "card-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    BufferedImage emptyCard() {
+        return emptyCard;
+    }
+
+    /**
+     * Starts loading a card image in the background (if it was not loaded yet), so it is ready when drawn.
+     *
+     * @param card - the card id.
+     */
+    void prefetch(int card) {
+        if (atlas != null || renderer != null || images.get(card) != null)
+            return;
+        CompletableFuture<BufferedImage> image = new CompletableFuture<>();
+        if (images.compareAndSet(card, null, image))
+            loader.execute(() -> load(card, image));
+    }
+
+    /**
+     * @param card - the card id.
+     * @return - the card image (loaded by the calling thread if it was not prefetched).
+     */
+    BufferedImage get(int card) {
+        if (atlas != null)
+            return atlas.getSubimage(card % atlasColumns * cardWidth, card / atlasColumns * cardHeight, cardWidth, cardHeight);
+        if (renderer != null)
+            return render(card);
+        CompletableFuture<BufferedImage> image = images.get(card);
+        if (image == null) {
+            image = new CompletableFuture<>();
+            if (images.compareAndSet(card, null, image))
+                load(card, image);
+            else
+                image = images.get(card);
+        }
+        return image.join();
+    }
+
+    private synchronized BufferedImage render(int card) {
+        BufferedImage image = rendered.get(card);
+        if (image == null) {
+            image = renderer.render(util.cardsToFeatures(new int[]{card})[0]);
+            rendered.put(card, image);
+            renderedBytes += bytes(image);
+
+            // evict the least recently used cards (keeping at least the new one)
+            Iterator<BufferedImage> eldest = rendered.values().iterator();
+            while (renderedBytes > renderedBytesLimit && rendered.size() > 1) {
+                renderedBytes -= bytes(eldest.next());
+                eldest.remove();
+            }
+        }
+        return image;
+    }
+
+    private static long bytes(BufferedImage image) {
+        return 4L * image.getWidth() * image.getHeight();
+    }
+
+    /**
+     * @return - true iff there is a bundled image for each card of the deck (checking the first and the last ones).
+     */
+    private static boolean hasBundledImages(Config config) {
+        ClassLoader loader = CardImages.class.getClassLoader();
+        return config.featureSize <= 10
+                && loader.getResource(cardResource(config, 0)) != null
+                && loader.getResource(cardResource(config, config.deckSize - 1)) != null;
+    }
+
+    private void load(int card, CompletableFuture<BufferedImage> image) {
+        try {
+            image.complete(read(cardResource(config, card)));
+        } catch (Throwable t) {
+            image.completeExceptionally(t);
+        }
+    }
+
+    static String cardResource(Config config, int card) {
+        return "cards/" + intInBaseToPaddedString(card, config.featureCount, config.featureSize) + ".png";
+    }
+
+    static BufferedImage read(String filename) {
+        URL resource = CardImages.class.getClassLoader().getResource(filename);
+        if (resource == null)
+            throw new RuntimeException(new FileNotFoundException(filename));
+        try {
+            return ImageIO.read(resource);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Properties readAtlasProperties() {
+        try (InputStream is = CardImages.class.getClassLoader().getResourceAsStream(ATLAS_PROPERTIES)) {
+            if (is == null)
+                return null;
+            Properties properties = new Properties();
+            properties.load(is);
+            return properties;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "cannot read the card atlas properties, loading the cards one by one", e);
+            return null;
+        }
+    }
+}
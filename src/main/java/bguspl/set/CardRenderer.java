@@ -0,0 +1,104 @@
+package bguspl.set;
+
+import java.awt.*;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * This class draws a card from its features, for decks that have no bundled card images.
+ * The features are drawn like the classic deck: the number of symbols, their color, their shape and their shading;
+ * any further features are written at the bottom of the card.
+ */
+class CardRenderer {
+
+    private static final int MARGIN = 12;
+
+    private final int featureSize;
+    private final BufferedImage emptyCard;
+
+    CardRenderer(Config config, BufferedImage emptyCard) {
+        this.featureSize = config.featureSize;
+        this.emptyCard = emptyCard;
+    }
+
+    /**
+     * @param features - the features of the card (as returned by Util.cardsToFeatures).
+     * @return - a new image of the card, of the same size as the empty card.
+     */
+    BufferedImage render(int[] features) {
+        int width = emptyCard.getWidth();
+        int height = emptyCard.getHeight();
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.drawImage(emptyCard, 0, 0, null);
+
+            int count = feature(features, 0, 0) + 1;
+            Color color = color(feature(features, 1, 0));
+            int shape = feature(features, 2, 0);
+            float fill = featureSize > 1 ? 1f - (float) feature(features, 3, 0) / (featureSize - 1) : 1f;
+
+            // lay the symbols out in rows of at most 5
+            int columns = Math.min(count, 5);
+            int rows = (count + columns - 1) / columns;
+            int extraHeight = features.length > 4 ? g.getFontMetrics().getHeight() : 0;
+            double cellWidth = (width - 2.0 * MARGIN) / 5;
+            double cellHeight = (height - 2.0 * MARGIN - extraHeight) / rows;
+            double size = Math.min(cellWidth, cellHeight) * 0.8;
+            for (int i = 0; i < count; i++) {
+                int row = i / columns;
+                int inRow = row == rows - 1 ? count - row * columns : columns;
+                double x = width / 2.0 + (i % columns - (inRow - 1) / 2.0) * cellWidth;
+                double y = MARGIN + (row + 0.5) * cellHeight;
+                Shape symbol = symbol(shape, x - size / 2, y - size / 2, size);
+                g.setColor(new Color(color.getRed(), color.getGreen(), color.getBlue(), Math.round(255 * fill)));
+                g.fill(symbol);
+                g.setColor(color);
+                g.setStroke(new BasicStroke(3f));
+                g.draw(symbol);
+            }
+
+            if (features.length > 4) {
+                String extra = Arrays.stream(features, 4, features.length).mapToObj(Integer::toString).collect(Collectors.joining(" "));
+                g.setColor(Color.DARK_GRAY);
+                g.drawString(extra, (width - g.getFontMetrics().stringWidth(extra)) / 2, height - MARGIN);
+            }
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    private static int feature(int[] features, int index, int defaultValue) {
+        return index < features.length ? features[index] : defaultValue;
+    }
+
+    private Color color(int value) {
+        return Color.getHSBColor((float) value / featureSize, 0.85f, 0.75f);
+    }
+
+    /**
+     * @return - an ellipse for shape 0, otherwise a regular polygon with shape + 2 sides.
+     */
+    private static Shape symbol(int shape, double x, double y, double size) {
+        if (shape == 0)
+            return new Ellipse2D.Double(x, y, size, size);
+        int sides = shape + 2;
+        Path2D.Double polygon = new Path2D.Double();
+        for (int i = 0; i < sides; i++) {
+            double angle = -Math.PI / 2 + 2 * Math.PI * i / sides;
+            double px = x + size / 2 + Math.cos(angle) * size / 2;
+            double py = y + size / 2 + Math.sin(angle) * size / 2;
+            if (i == 0)
+                polygon.moveTo(px, py);
+            else
+                polygon.lineTo(px, py);
+        }
+        polygon.closePath();
+        return polygon;
+    }
+}
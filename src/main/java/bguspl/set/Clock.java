@@ -0,0 +1,67 @@
+package bguspl.set;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The source of time of the game engine: reading the time, sleeping and running delayed tasks all go through it, so a
+ * game can run on the system clock or on a simulated one.
+ */
+public interface Clock {
+
+    /**
+     * Delayed tasks (e.g. the actor engine's timer messages), cancelled together when the game ends.
+     */
+    interface Timers {
+
+        /**
+         * Runs a task after a delay.
+         *
+         * @param task   - the task to run.
+         * @param millis - the delay in milliseconds.
+         * @throws java.util.concurrent.RejectedExecutionException - if the timers were shut down.
+         */
+        void schedule(Runnable task, long millis);
+
+        /**
+         * Cancels the pending tasks.
+         */
+        void shutdown();
+    }
+
+    /**
+     * @return - the current time in milliseconds.
+     */
+    long millis();
+
+    /**
+     * @return - the current time in nanoseconds (only meaningful as the difference of two readings).
+     */
+    default long nanos() {
+        return TimeUnit.MILLISECONDS.toNanos(millis());
+    }
+
+    /**
+     * Sleeps for the given time.
+     *
+     * @param millis - the time to sleep in milliseconds.
+     */
+    void sleep(long millis) throws InterruptedException;
+
+    /**
+     * @param name - the name of the thread running the tasks (if the clock needs one).
+     * @return - new timers running on this clock.
+     */
+    Timers newTimers(String name);
+
+    /**
+     * Wraps the executor running the engine's work, so the clock knows when the engine is idle.
+     *
+     * @param executor - the engine's executor.
+     * @param threads  - the number of threads of the executor.
+     * @return - the executor to submit the engine's work to.
+     */
+    default Executor track(Executor executor, int threads) {
+        return executor;
+    }
+}
@@ -6,7 +6,10 @@ import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.Locale;
 import java.util.Properties;
+import java.util.Random;
+import java.util.SplittableRandom;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -21,6 +24,32 @@ public class Config {
     public final long randomSpinMin;
     public final long randomSpinMax;
 
+    /**
+     * The number of log records buffered for the background log writer, and whether logging threads wait for room
+     * when the buffer is full (block) or their records are dropped (drop)
+     */
+    public final int logBufferSize;
+    public final boolean logBlockWhenFull;
+
+    /**
+     * The size (in megabytes) at which the log file is compressed and a new one is started (0 for no limit), the
+     * maximal number of log files kept per game, and the number of games whose logs are kept (0 to keep all)
+     */
+    public final int logFileMegabytes;
+    public final int logMaxFiles;
+    public final int logRetainGames;
+
+    /**
+     * The number of most recent game events kept by the flight recorder (0 disables it)
+     */
+    public final int flightRecorderEvents;
+
+    /**
+     * True to measure the contention on the game's locks, and the time between contention reports (0 for none)
+     */
+    public final boolean lockProfiling;
+    public final int lockReportSeconds;
+
     /**
      * The number of features on the cards (e.g. shape, color etc.)
      */
@@ -81,11 +110,73 @@ public class Config {
      */
     public final long tableDelayMillis;
 
+    /**
+     * The number of milliseconds to delay before placing/removing several cards on the table at once
+     */
+    public final long tableBulkDelayMillis;
+
     /**
      * The number of milliseconds to pause at the end of the game before closing
      */
     public final long endGamePauseMillies;
 
+    /**
+     * Whether to run the player and computer threads as virtual threads (if the runtime supports them)
+     */
+    public final boolean virtualThreads;
+
+    /**
+     * The game engines (set by Engine=threaded, actor or optimistic).
+     */
+    public enum Engine {
+        /**
+         * A thread per player, the dealer thread checks the sets.
+         */
+        THREADED,
+        /**
+         * The players and the dealer are actors on a pool of threads.
+         */
+        ACTOR,
+        /**
+         * A thread per player, the players claim and verify their sets themselves.
+         */
+        OPTIMISTIC
+    }
+
+    /**
+     * The game engine to run.
+     */
+    public final Engine engine;
+
+    /**
+     * The number of threads running the actors of the actor engine (0 for the number of available processors)
+     */
+    public final int actorThreads;
+
+    /**
+     * The clock the game runs on: "system" (real time) or "simulated" (time jumps ahead whenever the engine is idle, so
+     * timeouts, freezes and delays take no real time; actor engine only, other engines reject it)
+     */
+    public final String clock;
+
+    /**
+     * How the dealer chooses the cards it deals: "random" (blindly from the top of the deck) or "guaranteed" (so that
+     * the table holds a set whenever the deck allows it, replacing as few cards as possible)
+     */
+    public final String dealStrategy;
+
+    /**
+     * The seed of the dealer's shuffles, the computer players' moves and the random spins (0 for a different game every
+     * run). A seeded game with Engine=actor, ActorThreads=1 and Clock=simulated replays exactly (or on the system clock,
+     * with no freezes and TurnTimeoutSeconds <= 0).
+     */
+    public final long seed;
+
+    /**
+     * The streams the seed is split into (see stream).
+     */
+    private static final int DEALER_STREAM = 0, PLAYERS_STREAM = 1, SPIN_STREAM = 2;
+
     /**
      * The names of the players to display on the screen
      * Note: if there are more players than names, the remaining players will be called "Player 3", "Player 4", etc.
@@ -132,6 +223,16 @@ public class Config {
      */
     public final int fontSize;
 
+    /**
+     * The maximal number of times per second the display is updated (0 means every update is shown on its own)
+     */
+    public final int maxFps;
+
+    /**
+     * The maximal size (in megabytes) of the cache of card images drawn for decks with no bundled card images
+     */
+    public final int cardCacheMegabytes;
+
     /**
      * The scancodes of the keyboard input data for each player
      * Notes:
@@ -186,6 +287,17 @@ public class Config {
         Level logLevel = Level.parse(properties.getProperty("LogLevel", "ALL"));
         String logFormat = properties.getProperty("LogFormat", "[%1$tT.%1$tL] [%2$-7s] %3$s%n");
         Main.setLoggerLevelAndFormat(logger, logLevel, logFormat);
+        logBufferSize = Integer.parseInt(properties.getProperty("LogBufferSize", "8192"));
+        String overflowPolicy = properties.getProperty("LogOverflowPolicy", "block").trim().toLowerCase();
+        if (!overflowPolicy.equals("block") && !overflowPolicy.equals("drop"))
+            logger.severe("warning: unknown log overflow policy " + overflowPolicy + ". Blocking when the log buffer is full.");
+        logBlockWhenFull = !overflowPolicy.equals("drop");
+        logFileMegabytes = Integer.parseInt(properties.getProperty("LogFileMegabytes", "16"));
+        logMaxFiles = Integer.parseInt(properties.getProperty("LogMaxFiles", "8"));
+        logRetainGames = Integer.parseInt(properties.getProperty("LogRetainGames", "20"));
+        flightRecorderEvents = Integer.parseInt(properties.getProperty("FlightRecorderEvents", "65536"));
+        lockProfiling = Boolean.parseBoolean(properties.getProperty("LockProfiling", "False"));
+        lockReportSeconds = Integer.parseInt(properties.getProperty("LockReportSeconds", "10"));
 
         // for debugging
         randomSpinMin = Long.parseLong(properties.getProperty("RandomSpinMin", "0"));
@@ -209,8 +321,43 @@ public class Config {
         pointFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PointFreezeSeconds", "1")) * 1000.0);
         penaltyFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PenaltyFreezeSeconds", "3")) * 1000.0);
         tableDelayMillis = (long) (Double.parseDouble(properties.getProperty("TableDelaySeconds", "0.1")) * 1000.0);
+        tableBulkDelayMillis = properties.containsKey("TableBulkDelaySeconds")
+                ? (long) (Double.parseDouble(properties.getProperty("TableBulkDelaySeconds")) * 1000.0)
+                : tableDelayMillis;
         endGamePauseMillies = (long) (Double.parseDouble(properties.getProperty("EndGamePauseSeconds", "5")) * 1000.0);
 
+        // threading settings
+        virtualThreads = Boolean.parseBoolean(properties.getProperty("VirtualThreads", "False"));
+        if (virtualThreads && !VirtualThreads.isSupported())
+            logger.severe("warning: virtual threads are not supported by this runtime. Using platform threads.");
+        String engineName = properties.getProperty("Engine", "threaded").trim();
+        Engine engineValue;
+        try {
+            engineValue = Engine.valueOf(engineName.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            logger.severe("warning: unknown engine " + engineName + ". Using the threaded engine.");
+            engineValue = Engine.THREADED;
+        }
+        engine = engineValue;
+        actorThreads = Integer.parseInt(properties.getProperty("ActorThreads", "0"));
+        String clockName = properties.getProperty("Clock", "system").trim().toLowerCase();
+        if (!clockName.equals("system") && !clockName.equals("simulated")) {
+            logger.severe("warning: unknown clock " + clockName + ". Using the system clock.");
+            clockName = "system";
+        } else if (clockName.equals("simulated") && engine != Engine.ACTOR) {
+            // the dealer thread of the other engines waits for its timer in real time, so the clock would be ignored
+            throw new IllegalArgumentException("Clock=simulated needs Engine=actor, not Engine="
+                    + engine.name().toLowerCase(Locale.ROOT));
+        }
+        clock = clockName;
+        String strategyName = properties.getProperty("DealStrategy", "random").trim().toLowerCase();
+        if (!strategyName.equals("random") && !strategyName.equals("guaranteed")) {
+            logger.severe("warning: unknown deal strategy " + strategyName + ". Dealing randomly.");
+            strategyName = "random";
+        }
+        dealStrategy = strategyName;
+        seed = Long.parseLong(properties.getProperty("Seed", "0"));
+
         // ui settings
         String[] names = properties.getProperty("PlayerNames", "Player 1, Player 2").split(",");
         playerNames = new String[players];
@@ -224,6 +371,8 @@ public class Config {
         playerCellWidth = Integer.parseInt(properties.getProperty("PlayerCellWidth", "300"));
         playerCellHeight = Integer.parseInt(properties.getProperty("PlayerCellHeight", "40"));
         fontSize = Integer.parseInt(properties.getProperty("FontSize", "40"));
+        maxFps = Integer.parseInt(properties.getProperty("MaxFps", "60"));
+        cardCacheMegabytes = Integer.parseInt(properties.getProperty("CardCacheMegabytes", "64"));
 
         // keyboard input data
         playerKeys = new int[players][rows * columns];
@@ -244,4 +393,54 @@ public class Config {
     public int[] playerKeys(int player) {
         return playerKeys[player];
     }
+
+    /**
+     * Finds a stream in the hierarchy of generators split from the seed: the seed's generator is split into the
+     * dealer's, the players' and the spins' streams, and the players' stream into one stream per player. A stream only
+     * depends on its path, not on which streams were asked for before it.
+     *
+     * @param path - the index of the stream at each level of the hierarchy.
+     */
+    private SplittableRandom stream(int... path) {
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int index : path) {
+            SplittableRandom child = random.split();
+            for (int i = 0; i < index; i++)
+                child = random.split();
+            random = child;
+        }
+        return random;
+    }
+
+    /**
+     * Note: the streams are handed out as java.util.Random (seeded from the splittable stream), as Collections.shuffle
+     * needs one.
+     *
+     * @return - the random generator of the dealer's shuffles (seeded from the configured seed, if any).
+     */
+    public Random dealerRandom() {
+        return seed != 0 ? new Random(stream(DEALER_STREAM).nextLong()) : new Random();
+    }
+
+    /**
+     * @param player - the id of the player.
+     * @return - the random generator of a computer player's moves (seeded from the configured seed, if any).
+     */
+    public Random playerRandom(int player) {
+        return seed != 0 ? new Random(stream(PLAYERS_STREAM, player).nextLong()) : new Random();
+    }
+
+    /**
+     * @return - the generator the random spins split their per thread generators from.
+     */
+    public SplittableRandom spinRandom() {
+        return seed != 0 ? stream(SPIN_STREAM) : new SplittableRandom();
+    }
+
+    /**
+     * @return - a new clock of the configured kind.
+     */
+    public Clock newClock() {
+        return clock.equals("simulated") ? new SimulatedClock() : new SystemClock();
+    }
 }
@@ -8,11 +8,29 @@ public class Env {
     public final Config config;
     public final UserInterface ui;
     public final Util util;
+    public final FlightRecorder recorder;
+    public final GameMetrics metrics;
+    public final LockProfiler locks;
+    public final Clock clock;
 
+    /**
+     * An environment without the diagnostics (no flight recorder, no lock profiler, metrics of its own) on the
+     * configured clock.
+     */
     public Env(Logger logger, Config config, UserInterface ui, Util util) {
+        this(logger, config, ui, util, FlightRecorder.disabled(), new GameMetrics(), LockProfiler.disabled(),
+                config.newClock());
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util, FlightRecorder recorder, GameMetrics metrics,
+               LockProfiler locks, Clock clock) {
         this.logger = logger;
         this.config = config;
         this.ui = ui;
         this.util = util;
+        this.recorder = recorder;
+        this.metrics = metrics;
+        this.locks = locks;
+        this.clock = clock;
     }
 }
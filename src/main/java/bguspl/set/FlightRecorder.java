@@ -0,0 +1,266 @@
+package bguspl.set;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class keeps the most recent game events in a fixed size binary ring buffer, so they can be examined after the
+ * fact without logging every event as text. Recording an event takes no lock and allocates nothing.
+ * The events are written to <dump prefix>.flight (see dump) on termination, on an uncaught error or on request
+ * (through JMX), and the file can be rendered in the log format with:
+ * java -cp target/classes bguspl.set.FlightRecorder <file>
+ */
+public class FlightRecorder implements FlightRecorderMXBean {
+
+    /**
+     * The event types.
+     */
+    public static final int CARD_PLACED = 1;
+    public static final int CARD_REMOVED = 2;
+    public static final int TOKEN_PLACED = 3;
+    public static final int TOKEN_REMOVED = 4;
+    public static final int TOKENS_REMOVED = 5;
+    public static final int CHECK_SUBMITTED = 6;
+    public static final int CHECK_JUDGED = 7;
+    public static final int FREEZE = 8;
+
+    /**
+     * The values of a CHECK_JUDGED event.
+     */
+    public static final int VERDICT_PENALTY = 0;
+    public static final int VERDICT_POINT = 1;
+    public static final int VERDICT_STALE = 2;
+
+    private static final int MAGIC = 0x53455446; // "SETF"
+    private static final int VERSION = 1;
+
+    /**
+     * Each event takes 3 longs: its sequence number (-1 while it is written), its nanoTime and its packed data.
+     */
+    private static final int FIELDS = 3;
+
+    private final Logger logger;
+    private final String dumpPrefix;
+    private final AtomicLongArray ring;
+    private final int capacity;
+    private final AtomicLong cursor = new AtomicLong();
+
+    /**
+     * The wall clock time matching startNanos (used to render the nanoTime stamps as times of day).
+     */
+    private final long startMillis;
+    private final long startNanos;
+
+    /**
+     * @param logger    - the game logger.
+     * @param events    - the number of most recent events to keep (rounded up to a power of 2; 0 disables recording).
+     * @param dumpPrefix - the path of the dump files, without extension (e.g. the game's log file name).
+     */
+    public FlightRecorder(Logger logger, int events, String dumpPrefix) {
+        this.logger = logger;
+        this.dumpPrefix = dumpPrefix;
+        capacity = events > 0 ? Integer.highestOneBit(Math.max(1, events - 1)) << 1 : 0;
+        ring = capacity > 0 ? new AtomicLongArray(capacity * FIELDS) : null;
+        if (ring != null)
+            for (int i = 0; i < capacity; i++)
+                ring.set(i * FIELDS, -1);
+        startMillis = System.currentTimeMillis();
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * @return - a recorder that records nothing.
+     */
+    public static FlightRecorder disabled() {
+        return new FlightRecorder(null, 0, null);
+    }
+
+    public boolean isEnabled() {
+        return ring != null;
+    }
+
+    /**
+     * Records an event.
+     *
+     * @param type   - the event type.
+     * @param player - the player id (-1 if none).
+     * @param slot   - the slot (-1 if none).
+     * @param value  - the card, verdict or freeze milliseconds (depending on the type).
+     */
+    public void record(int type, int player, int slot, int value) {
+        if (ring == null)
+            return;
+        long sequence = cursor.getAndIncrement();
+        int index = (int) (sequence & (capacity - 1)) * FIELDS;
+        ring.set(index, -1);
+        ring.lazySet(index + 1, System.nanoTime());
+        ring.lazySet(index + 2, pack(type, player, slot, value));
+        ring.lazySet(index, sequence);
+    }
+
+    private static long pack(int type, int player, int slot, int value) {
+        return ((long) type << 56) | ((long) ((player + 1) & 0xFFF) << 44) | ((long) ((slot + 1) & 0xFFF) << 32)
+                | (value & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Registers the recorder as a JMX bean, so a dump can be requested from a management console.
+     */
+    public void register() {
+        if (ring == null)
+            return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName("bguspl.set:type=FlightRecorder"));
+        } catch (JMException e) {
+            logger.log(Level.WARNING, "cannot register the flight recorder bean", e);
+        }
+    }
+
+    public void unregister() {
+        if (ring == null)
+            return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName("bguspl.set:type=FlightRecorder"));
+        } catch (JMException ignored) {
+        }
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public long getRecordedEvents() {
+        return cursor.get();
+    }
+
+    @Override
+    public synchronized String dump() {
+        if (ring == null)
+            return null;
+        Path path = Paths.get(dumpPrefix + ".flight");
+        for (int i = 1; Files.exists(path); i++)
+            path = Paths.get(dumpPrefix + "." + i + ".flight");
+        try {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+                write(out);
+            }
+            logger.info("flight recorder dumped to " + path);
+            return path.toString();
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "cannot dump the flight recorder", e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the events still in the ring, oldest first (events being overwritten meanwhile are skipped).
+     */
+    void write(DataOutputStream out) throws IOException {
+        long end = cursor.get();
+        long start = Math.max(0, end - capacity);
+        long[] times = new long[(int) (end - start)];
+        long[] data = new long[times.length];
+        int count = 0;
+        for (long sequence = start; sequence < end; sequence++) {
+            int index = (int) (sequence & (capacity - 1)) * FIELDS;
+            if (ring.get(index) != sequence)
+                continue;
+            long time = ring.get(index + 1);
+            long packed = ring.get(index + 2);
+            if (ring.get(index) != sequence)
+                continue;
+            times[count] = time;
+            data[count++] = packed;
+        }
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(startMillis);
+        out.writeLong(startNanos);
+        out.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            out.writeLong(times[i]);
+            out.writeLong(data[i]);
+        }
+    }
+
+    /**
+     * Renders a dump in the log format.
+     *
+     * @param in     - the dump.
+     * @param out    - where to write the log lines.
+     * @param format - the log format (as the LogFormat config property).
+     */
+    public static void decode(DataInputStream in, PrintWriter out, String format) throws IOException {
+        if (in.readInt() != MAGIC)
+            throw new IOException("not a flight recorder dump");
+        int version = in.readInt();
+        if (version != VERSION)
+            throw new IOException("unsupported flight recorder dump version " + version);
+        long startMillis = in.readLong();
+        long startNanos = in.readLong();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            long time = in.readLong();
+            long data = in.readLong();
+            Date date = new Date(startMillis + (time - startNanos) / 1_000_000);
+            out.print(String.format(format, date, Level.SEVERE.getLocalizedName(), describe(data)));
+        }
+        out.flush();
+    }
+
+    /**
+     * @return - the log message of a packed event.
+     */
+    static String describe(long data) {
+        int type = (int) (data >>> 56);
+        int player = (int) ((data >>> 44) & 0xFFF) - 1;
+        int slot = (int) ((data >>> 32) & 0xFFF) - 1;
+        int value = (int) data;
+        switch (type) {
+            case CARD_PLACED:
+                return UiEvent.placeCard(value, slot).toString();
+            case CARD_REMOVED:
+                return UiEvent.removeCard(slot).toString();
+            case TOKEN_PLACED:
+                return UiEvent.placeToken(player, slot).toString();
+            case TOKEN_REMOVED:
+                return UiEvent.removeToken(player, slot).toString();
+            case TOKENS_REMOVED:
+                return slot < 0 ? UiEvent.removeTokens().toString() : UiEvent.removeTokens(slot).toString();
+            case CHECK_SUBMITTED:
+                return "player " + (player + 1) + " submitted a set";
+            case CHECK_JUDGED:
+                return "player " + (player + 1) + " set judged: "
+                        + (value == VERDICT_POINT ? "point" : value == VERDICT_PENALTY ? "penalty" : "stale");
+            case FREEZE:
+                return UiEvent.setFreeze(player, value).toString();
+            default:
+                return "unknown event " + type;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("usage: java bguspl.set.FlightRecorder <dump file> [log format]");
+            return;
+        }
+        String format = args.length > 1 ? args[1] : "[%1$tT.%1$tL] [%2$-7s] %3$s%n";
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(args[0])))) {
+            decode(in, new PrintWriter(new OutputStreamWriter(System.out)), format);
+        }
+    }
+}
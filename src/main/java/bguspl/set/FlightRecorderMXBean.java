@@ -0,0 +1,24 @@
+package bguspl.set;
+
+/**
+ * The management interface of the flight recorder (registered as bguspl.set:type=FlightRecorder).
+ */
+public interface FlightRecorderMXBean {
+
+    /**
+     * @return - the number of events the recorder keeps (the most recent ones).
+     */
+    int getCapacity();
+
+    /**
+     * @return - the number of events recorded since the game started.
+     */
+    long getRecordedEvents();
+
+    /**
+     * Writes the recorded events to a new file.
+     *
+     * @return - the path of the file, or null if the recorder is disabled or the file could not be written.
+     */
+    String dump();
+}
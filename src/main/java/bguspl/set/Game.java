@@ -0,0 +1,86 @@
+package bguspl.set;
+
+import bguspl.set.ex.ActorEngine;
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+
+/**
+ * This class hosts a single game: it creates the table, the dealer and the players on the given environment and runs
+ * the dealer thread (or the actor engine running the dealer and the players) until the game is over.
+ * A game keeps no static state, so several games can run at once in one JVM, sharing the immutable parts of their
+ * environments (see Tournament).
+ */
+public class Game {
+
+    /**
+     * The game environment object.
+     */
+    private final Env env;
+
+    /**
+     * Game entities.
+     */
+    private final Table table;
+    private final Dealer dealer;
+    private final Player[] players;
+
+    /**
+     * The actor engine running the game (null if the dealer runs it).
+     */
+    private final ActorEngine actorEngine;
+
+    /**
+     * The name of the thread running the dealer (or the actor engine).
+     */
+    private final String threadName;
+
+    /**
+     * @param env        - the environment object.
+     * @param players    - the array the players are created into (the user interface may hold it already).
+     * @param threadName - the name of the thread running the dealer (or the actor engine).
+     */
+    public Game(Env env, Player[] players, String threadName) {
+        this.env = env;
+        this.players = players;
+        this.threadName = threadName;
+        table = new Table(env);
+        dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, i < env.config.humanPlayers);
+        actorEngine = env.config.engine == Config.Engine.ACTOR ? new ActorEngine(env, table, dealer, players) : null;
+    }
+
+    /**
+     * Plays the game: starts the dealer thread (or the actor engine) and waits until the game is over.
+     */
+    public void play() throws InterruptedException {
+        ThreadLogger dealerThread = new ThreadLogger(actorEngine != null ? actorEngine : dealer, threadName, env.logger);
+        dealerThread.startWithLog();
+        dealerThread.joinWithLog();
+    }
+
+    /**
+     * Called when the game should be terminated due to an external event.
+     */
+    public void terminate() {
+        if (actorEngine != null)
+            actorEngine.terminate();
+        else
+            dealer.terminate();
+    }
+
+    /**
+     * @return - the score of each player (indexed by player id).
+     */
+    public int[] scores() {
+        int[] scores = new int[players.length];
+        for (int i = 0; i < players.length; i++)
+            scores[i] = players[i].score();
+        return scores;
+    }
+
+    public Env getEnv() {
+        return env;
+    }
+}
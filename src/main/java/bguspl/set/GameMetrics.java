@@ -0,0 +1,320 @@
+package bguspl.set;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class collects the performance metrics of the game engine: check latency and queue depth, points and
+ * penalties, reshuffles, time players spend blocked by the dealer and the ui event rate.
+ * Recording takes no lock and allocates nothing, so it is always on; the metrics are read through JMX and summarized
+ * in the log when the game ends.
+ */
+public class GameMetrics implements GameMetricsMXBean {
+
+    private static final String NAME = "bguspl.set:type=GameMetrics";
+
+    /**
+     * A histogram of non negative values in log-linear buckets (as in HdrHistogram): the values below SUB_BUCKETS have
+     * a bucket each, and every larger power of 2 range is split into SUB_BUCKETS equal buckets, so a percentile is
+     * reported within 1/SUB_BUCKETS (6.25%) of the recorded value.
+     */
+    static final class Histogram {
+        private static final int SUB_BITS = 4;
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+        private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long value) {
+            value = Math.max(0, value);
+            buckets.incrementAndGet(bucket(value));
+            count.increment();
+            sum.add(value);
+            long current = max.get();
+            while (value > current && !max.compareAndSet(current, value))
+                current = max.get();
+        }
+
+        /**
+         * @return - the bucket of a non negative value.
+         */
+        static int bucket(long value) {
+            if (value < SUB_BUCKETS)
+                return (int) value;
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int shift = exponent - SUB_BITS;
+            return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+        }
+
+        /**
+         * @return - the largest value of a bucket.
+         */
+        static long upperBound(int bucket) {
+            if (bucket < SUB_BUCKETS)
+                return bucket;
+            int shift = bucket / SUB_BUCKETS - 1;
+            long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+            return lower + (1L << shift) - 1;
+        }
+
+        long count() {
+            return count.sum();
+        }
+
+        long sum() {
+            return sum.sum();
+        }
+
+        long max() {
+            return max.get();
+        }
+
+        double mean() {
+            long n = count.sum();
+            return n == 0 ? 0 : (double) sum.sum() / n;
+        }
+
+        /**
+         * @param fraction - the fraction of the values (e.g. 0.99).
+         * @return - the upper bound of the bucket holding the given percentile (never above the maximal value).
+         */
+        long percentile(double fraction) {
+            long n = count.sum();
+            if (n == 0)
+                return 0;
+            long rank = (long) Math.ceil(fraction * n);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank)
+                    return Math.min(upperBound(i), max.get());
+            }
+            return max.get();
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++)
+                buckets.set(i, 0);
+            count.reset();
+            sum.reset();
+            max.set(0);
+        }
+    }
+
+    private final Histogram checkLatency = new Histogram();
+    private final Histogram checkQueueDepth = new Histogram();
+    private final Histogram reshuffleDuration = new Histogram();
+    private final Histogram blocked = new Histogram();
+    private final LongAdder points = new LongAdder();
+    private final LongAdder penalties = new LongAdder();
+    private final LongAdder uiEvents = new LongAdder();
+
+    private volatile long startNanos = System.nanoTime();
+
+    /**
+     * @param nanos - the time from sending a check to the dealer until the player got the verdict.
+     */
+    public void checkAnswered(long nanos) {
+        checkLatency.record(nanos);
+    }
+
+    /**
+     * @param depth - the number of checks waiting for the dealer, including the one just submitted.
+     */
+    public void checkQueued(int depth) {
+        checkQueueDepth.record(depth);
+    }
+
+    public void point() {
+        points.increment();
+    }
+
+    public void penalty() {
+        penalties.increment();
+    }
+
+    /**
+     * @param nanos - the time it took to clear the table and deal it again.
+     */
+    public void reshuffled(long nanos) {
+        reshuffleDuration.record(nanos);
+    }
+
+    /**
+     * @param nanos - the time a player waited for the dealer to stop blocking the players.
+     */
+    public void blocked(long nanos) {
+        blocked.record(nanos);
+    }
+
+    /**
+     * @param events - the number of ui updates sent to the user interface.
+     */
+    public void uiEvents(int events) {
+        uiEvents.add(events);
+    }
+
+    /**
+     * Registers the metrics as a JMX bean.
+     *
+     * @param logger - the game logger (for registration errors).
+     */
+    public void register(Logger logger) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(NAME));
+        } catch (JMException e) {
+            logger.log(Level.WARNING, "cannot register the game metrics bean", e);
+        }
+    }
+
+    public void unregister() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(NAME));
+        } catch (JMException ignored) {
+        }
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    private double perSecond(long count) {
+        double seconds = getUptimeSeconds();
+        return seconds > 0 ? count / seconds : 0;
+    }
+
+    @Override
+    public double getUptimeSeconds() {
+        return (System.nanoTime() - startNanos) / 1e9;
+    }
+
+    @Override
+    public long getChecks() {
+        return checkLatency.count();
+    }
+
+    @Override
+    public double getCheckLatencyMeanMicros() {
+        return checkLatency.mean() / 1000;
+    }
+
+    @Override
+    public long getCheckLatencyP50Micros() {
+        return micros(checkLatency.percentile(0.5));
+    }
+
+    @Override
+    public long getCheckLatencyP99Micros() {
+        return micros(checkLatency.percentile(0.99));
+    }
+
+    @Override
+    public long getCheckLatencyMaxMicros() {
+        return micros(checkLatency.max());
+    }
+
+    @Override
+    public double getCheckQueueDepthMean() {
+        return checkQueueDepth.mean();
+    }
+
+    @Override
+    public long getCheckQueueDepthMax() {
+        return checkQueueDepth.max();
+    }
+
+    @Override
+    public long getPoints() {
+        return points.sum();
+    }
+
+    @Override
+    public long getPenalties() {
+        return penalties.sum();
+    }
+
+    @Override
+    public double getPointsPerSecond() {
+        return perSecond(points.sum());
+    }
+
+    @Override
+    public double getPenaltiesPerSecond() {
+        return perSecond(penalties.sum());
+    }
+
+    @Override
+    public long getReshuffles() {
+        return reshuffleDuration.count();
+    }
+
+    @Override
+    public double getReshuffleMeanMillis() {
+        return reshuffleDuration.mean() / 1e6;
+    }
+
+    @Override
+    public long getReshuffleMaxMillis() {
+        return millis(reshuffleDuration.max());
+    }
+
+    @Override
+    public long getBlockedMillis() {
+        return millis(blocked.sum());
+    }
+
+    @Override
+    public long getBlockedWaits() {
+        return blocked.count();
+    }
+
+    @Override
+    public long getUiEvents() {
+        return uiEvents.sum();
+    }
+
+    @Override
+    public double getUiEventsPerSecond() {
+        return perSecond(uiEvents.sum());
+    }
+
+    @Override
+    public void reset() {
+        checkLatency.reset();
+        checkQueueDepth.reset();
+        reshuffleDuration.reset();
+        blocked.reset();
+        points.reset();
+        penalties.reset();
+        uiEvents.reset();
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * @return - a one line summary of the metrics, for the log.
+     */
+    public String summary() {
+        return String.format("metrics: %.1fs, %d checks (latency mean %.0fus p50 %dus p99 %dus max %dus, queue mean %.2f max %d), "
+                        + "%d points (%.2f/s), %d penalties (%.2f/s), %d reshuffles (mean %.1fms max %dms), "
+                        + "blocked %dms in %d waits, %d ui events (%.0f/s)",
+                getUptimeSeconds(), getChecks(), getCheckLatencyMeanMicros(), getCheckLatencyP50Micros(),
+                getCheckLatencyP99Micros(), getCheckLatencyMaxMicros(), getCheckQueueDepthMean(), getCheckQueueDepthMax(),
+                getPoints(), getPointsPerSecond(), getPenalties(), getPenaltiesPerSecond(), getReshuffles(),
+                getReshuffleMeanMillis(), getReshuffleMaxMillis(), getBlockedMillis(), getBlockedWaits(), getUiEvents(),
+                getUiEventsPerSecond());
+    }
+}
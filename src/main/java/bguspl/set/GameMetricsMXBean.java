@@ -0,0 +1,69 @@
+package bguspl.set;
+
+/**
+ * The management interface of the game metrics (registered as bguspl.set:type=GameMetrics).
+ * Latency and duration percentiles are estimates from log-linear buckets (at most 6.25% above the real value).
+ */
+public interface GameMetricsMXBean {
+
+    /**
+     * @return - the number of seconds since the metrics were started or reset.
+     */
+    double getUptimeSeconds();
+
+    /**
+     * @return - the number of checks answered by the dealer since the game started.
+     */
+    long getChecks();
+
+    /**
+     * @return - the submit to verdict latency of the checks (in microseconds).
+     */
+    double getCheckLatencyMeanMicros();
+
+    long getCheckLatencyP50Micros();
+
+    long getCheckLatencyP99Micros();
+
+    long getCheckLatencyMaxMicros();
+
+    /**
+     * @return - the number of checks waiting for the dealer, as seen by the submitted checks.
+     */
+    double getCheckQueueDepthMean();
+
+    long getCheckQueueDepthMax();
+
+    long getPoints();
+
+    long getPenalties();
+
+    double getPointsPerSecond();
+
+    double getPenaltiesPerSecond();
+
+    /**
+     * @return - the number of full redeals of the table (including the first deal).
+     */
+    long getReshuffles();
+
+    double getReshuffleMeanMillis();
+
+    long getReshuffleMaxMillis();
+
+    /**
+     * @return - the total time players spent waiting for the dealer to unblock them (in milliseconds).
+     */
+    long getBlockedMillis();
+
+    long getBlockedWaits();
+
+    long getUiEvents();
+
+    double getUiEventsPerSecond();
+
+    /**
+     * Starts all the metrics over.
+     */
+    void reset();
+}
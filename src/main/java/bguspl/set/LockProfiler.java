@@ -0,0 +1,280 @@
+package bguspl.set;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.logging.Logger;
+
+/**
+ * This class measures the contention on the game's locks and monitors, per lock site: a site is a lock (e.g. the
+ * dealer's monitor) together with the game operation taking it (e.g. givePoint). For each site it records how long
+ * threads waited to acquire the lock, how long they held it, and which site was holding the lock while they waited.
+ * The game takes its locks through a ProfiledLock per site, used as a plain Lock:
+ * <pre>
+ *     ProfiledLock givePointLock = env.locks.lock(removeCardsLock.writeLock(), "removeCardsLock", "givePoint");
+ *     givePointLock.lock();
+ *     try {
+ *         ...
+ *     } finally {
+ *         givePointLock.unlock();
+ *     }
+ * </pre>
+ * The time a site waits on a condition of its lock is not counted as holding the lock.
+ * Profiling is opt-in: the sites of a disabled profiler do nothing.
+ */
+public class LockProfiler {
+
+    /**
+     * Waits shorter than this are not attributed to a holder (the lock was most likely not contended).
+     */
+    private static final long CONTENDED_NANOS = 20_000;
+
+    /**
+     * A lock, remembering its most recent holder (a thread that waited for the lock was blocked by the holder that
+     * acquired it last before it).
+     */
+    private static final class Holder {
+        volatile Site site;
+        volatile Thread thread;
+    }
+
+    /**
+     * The statistics of a lock site (shared by the sites with the same lock and operation names).
+     */
+    private static final class Stats {
+        final String name;
+        final LongAdder acquisitions = new LongAdder();
+        final LongAdder contended = new LongAdder();
+        final LongAdder waitNanos = new LongAdder();
+        final AtomicLong maxWaitNanos = new AtomicLong();
+        final LongAdder holdNanos = new LongAdder();
+        final AtomicLong maxHoldNanos = new AtomicLong();
+        final Map<String, LongAdder> blockedBy = new ConcurrentHashMap<>();
+
+        Stats(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * A place in the code taking a lock.
+     */
+    public static final class Site {
+        private final Holder holder;
+        private final Stats stats;
+
+        private Site(Holder holder, Stats stats) {
+            this.holder = holder;
+            this.stats = stats;
+        }
+
+        /**
+         * Called before acquiring the lock.
+         *
+         * @return - the time the acquisition started (0 if profiling is disabled).
+         */
+        public long enter() {
+            return stats == null ? 0 : System.nanoTime();
+        }
+
+        /**
+         * Called right after the lock was acquired.
+         *
+         * @param entered - the value returned by enter.
+         * @return - the time the lock was acquired (0 if profiling is disabled).
+         */
+        public long acquired(long entered) {
+            if (stats == null)
+                return 0;
+            Site blocking = holder.site;
+            Thread blockingThread = holder.thread;
+            long now = System.nanoTime();
+            long wait = now - entered;
+            stats.acquisitions.increment();
+            stats.waitNanos.add(wait);
+            max(stats.maxWaitNanos, wait);
+            if (wait >= CONTENDED_NANOS) {
+                stats.contended.increment();
+                String by = blocking == null ? "unknown" : blocking.stats.name
+                        + (blockingThread == null ? "" : " (" + blockingThread.getName() + ")");
+                stats.blockedBy.computeIfAbsent(by, key -> new LongAdder()).add(wait);
+            }
+            holder.site = this;
+            holder.thread = Thread.currentThread();
+            return now;
+        }
+
+        /**
+         * Called before waiting on the lock (wait or await, which release the lock meanwhile).
+         *
+         * @param acquired - the value returned by acquired (or resumed).
+         * @return - 0, the value to pass to exit if the wait ends with an exception.
+         */
+        public long pause(long acquired) {
+            exit(acquired);
+            return 0;
+        }
+
+        /**
+         * Called after waiting on the lock.
+         *
+         * @return - the time the lock was acquired again (0 if profiling is disabled).
+         */
+        public long resumed() {
+            if (stats == null)
+                return 0;
+            holder.site = this;
+            holder.thread = Thread.currentThread();
+            return System.nanoTime();
+        }
+
+        /**
+         * Called before releasing the lock.
+         *
+         * @param acquired - the value returned by acquired.
+         */
+        public void exit(long acquired) {
+            if (stats == null || acquired == 0)
+                return;
+            long hold = System.nanoTime() - acquired;
+            stats.holdNanos.add(hold);
+            max(stats.maxHoldNanos, hold);
+        }
+    }
+
+    private static final Site DISABLED_SITE = new Site(null, null);
+
+    private final boolean enabled;
+    private final Map<String, Holder> locks = new ConcurrentHashMap<>();
+    private final Map<String, Stats> sites = new ConcurrentHashMap<>();
+
+    /**
+     * The holds of each profiled lock, shared by the sites taking it.
+     */
+    private final Map<Lock, ThreadLocal<ProfiledLock.Hold>> holds = new ConcurrentHashMap<>();
+    private ScheduledExecutorService reporter;
+
+    /**
+     * @param enabled - true to measure the lock sites, false for sites that do nothing.
+     */
+    public LockProfiler(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return - a profiler that measures nothing.
+     */
+    public static LockProfiler disabled() {
+        return new LockProfiler(false);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param lock      - the name of the lock (e.g. "dealer").
+     * @param operation - the name of the operation taking the lock (e.g. "givePoint").
+     * @return - the site of the operation on the lock.
+     */
+    public Site site(String lock, String operation) {
+        return site(lock, lock, operation);
+    }
+
+    /**
+     * A site on one of several locks reported together (e.g. the slot monitors).
+     *
+     * @param lock      - the name identifying the lock instance (e.g. "slot 3").
+     * @param group     - the name the lock is reported under (e.g. "slot").
+     * @param operation - the name of the operation taking the lock.
+     * @return - the site of the operation on the lock.
+     */
+    public Site site(String lock, String group, String operation) {
+        if (!enabled)
+            return DISABLED_SITE;
+        Holder holder = locks.computeIfAbsent(lock, key -> new Holder());
+        String name = group + "/" + operation;
+        return new Site(holder, sites.computeIfAbsent(name, Stats::new));
+    }
+
+    /**
+     * @param lock      - the lock (the sites of the operations taking it wrap the same lock).
+     * @param name      - the name of the lock (e.g. "dealer").
+     * @param operation - the name of the operation taking the lock (e.g. "givePoint").
+     * @return - the lock as taken by the operation.
+     */
+    public ProfiledLock lock(Lock lock, String name, String operation) {
+        return lock(lock, name, name, operation);
+    }
+
+    /**
+     * One of several locks reported together (e.g. the slot locks).
+     *
+     * @param lock      - the lock.
+     * @param name      - the name identifying the lock instance (e.g. "slot 3").
+     * @param group     - the name the lock is reported under (e.g. "slot").
+     * @param operation - the name of the operation taking the lock.
+     * @return - the lock as taken by the operation.
+     */
+    public ProfiledLock lock(Lock lock, String name, String group, String operation) {
+        if (!enabled)
+            return new ProfiledLock(lock, DISABLED_SITE, null);
+        return new ProfiledLock(lock, site(name, group, operation),
+                holds.computeIfAbsent(lock, key -> ThreadLocal.withInitial(ProfiledLock.Hold::new)));
+    }
+
+    private static void max(AtomicLong max, long value) {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value))
+            current = max.get();
+    }
+
+    /**
+     * Logs the report periodically, until stopped.
+     *
+     * @param logger  - the game logger.
+     * @param seconds - the time between reports (0 for no periodic reports).
+     */
+    public synchronized void startReports(Logger logger, int seconds) {
+        if (!enabled || seconds <= 0 || reporter != null)
+            return;
+        reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lock-profiler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> logger.info(report()), seconds, seconds, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stopReports() {
+        if (reporter != null)
+            reporter.shutdownNow();
+        reporter = null;
+    }
+
+    /**
+     * @return - the contention report: one line per site, the most waited on first, with the sites that blocked it.
+     */
+    public String report() {
+        List<Stats> all = new ArrayList<>(sites.values());
+        all.sort((a, b) -> Long.compare(b.waitNanos.sum(), a.waitNanos.sum()));
+        StringBuilder report = new StringBuilder("lock contention (site: acquisitions, contended, wait total/max ms, hold total/max ms, blocked by):");
+        for (Stats stats : all) {
+            report.append(String.format("%n  %-28s %8d %8d %10.2f %8.2f %10.2f %8.2f", stats.name,
+                    stats.acquisitions.sum(), stats.contended.sum(), stats.waitNanos.sum() / 1e6,
+                    stats.maxWaitNanos.get() / 1e6, stats.holdNanos.sum() / 1e6, stats.maxHoldNanos.get() / 1e6));
+            stats.blockedBy.entrySet().stream()
+                    .sorted((a, b) -> Long.compare(b.getValue().sum(), a.getValue().sum()))
+                    .limit(3)
+                    .forEach(entry -> report.append(String.format(" %s %.2fms", entry.getKey(), entry.getValue().sum() / 1e6)));
+        }
+        return report.toString();
+    }
+}
@@ -1,11 +1,9 @@
 package bguspl.set;
 
-import bguspl.set.ex.Dealer;
 import bguspl.set.ex.Player;
-import bguspl.set.ex.Table;
 
-import java.io.File;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -17,16 +15,19 @@ import java.util.logging.*;
  */
 public class Main {
 
-    private static Dealer dealer;
+    private static volatile Game game;
     private static Thread mainThread;
 
     private static boolean xButtonPressed = false;
     private static Logger logger;
+    private static RotatingLogHandler logHandler;
+    private static String logName;
 
     public static void xButtonPressed() throws InterruptedException {
         if (logger != null) logger.severe("exit button pressed");
         xButtonPressed = true;
-        if (dealer != null) dealer.terminate();
+        Game game = Main.game;
+        if (game != null) game.terminate();
         mainThread.join();
     }
 
@@ -36,51 +37,66 @@ public class Main {
      * @param args - unused.
      */
     public static void main(String[] args) {
-        for (int l=0; l<1; l++) {
-            mainThread = Thread.currentThread();
-
-            // create the game environment objects
-            logger = initLogger();
-            ThreadLogger.logStart(logger, Thread.currentThread().getName());
-            Config config = new Config(logger, "config.properties");
-            Util util = new UtilImpl(config);
-
-            Player[] players = new Player[config.players];
-            UserInterface ui = null;
-            try {
-                ui = new UserInterfaceSwing(logger, config, players);
-            } catch (UnsupportedOperationException | IllegalArgumentException e) {
-                logger.severe("error creating swing user interface: " + e.getMessage());
-                logger.severe("will try to run without user interface");
-                if (config.humanPlayers > 0)
-                    logger.severe("warning: running with human players with no user interface");
-            }
-            ui = new UserInterfaceDecorator(logger, util, ui);
-
-            Env env = new Env(logger, config, ui, util);
-
-            // create the game entities
-            Table table = new Table(env);
-            dealer = new Dealer(env, table, players);
-            for (int i = 0; i < players.length; i++)
-                players[i] = new Player(env, dealer, table, i, i < env.config.humanPlayers);
-
-            // start the dealer thread
-            ThreadLogger dealerThread = new ThreadLogger(dealer, "dealer", logger);
-            dealerThread.startWithLog();
-
-            try {
-                // shutdown stuff
-                dealerThread.joinWithLog();
-                if (!xButtonPressed && config.endGamePauseMillies > 0) Thread.sleep(config.endGamePauseMillies);
-            } catch (InterruptedException ignored) {
-            } finally {
-                logger.severe("thanks for playing... it was fun!");
-                System.out.println("Thanks for playing... it was fun!");
-                ThreadLogger.logStop(logger, Thread.currentThread().getName());
-                if (!xButtonPressed) env.ui.dispose();
-                for (Handler h : logger.getHandlers()) h.flush();
-            }
+        mainThread = Thread.currentThread();
+
+        // create the game environment objects
+        logger = initLogger();
+        ThreadLogger.logStart(logger, Thread.currentThread().getName());
+        Config config = new Config(logger, "config.properties");
+        logHandler.setLimits(config.logFileMegabytes * 1024L * 1024L, config.logMaxFiles);
+        try {
+            RotatingLogHandler.retainGames(Paths.get("./logs/"), config.logRetainGames, logName);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "cannot remove old logs", e);
+        }
+        AsyncLogHandler.install(logger, config);
+        Util util = new UtilImpl(config);
+
+        Player[] players = new Player[config.players];
+        UserInterface ui = null;
+        try {
+            ui = new UserInterfaceSwing(logger, config, util, players);
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            logger.severe("error creating swing user interface: " + e.getMessage());
+            logger.severe("will try to run without user interface");
+            System.out.println("running without a user interface. Check logs.");
+            if (config.humanPlayers > 0)
+                logger.severe("warning: running with human players with no user interface");
+        }
+        GameMetrics metrics = new GameMetrics();
+        metrics.register(logger);
+        ui = new UserInterfaceDecorator(logger, util, ui, metrics);
+
+        FlightRecorder recorder = new FlightRecorder(logger, config.flightRecorderEvents, "./logs/" + logName);
+        recorder.register();
+        Thread.setDefaultUncaughtExceptionHandler((thread, e) -> {
+            logger.log(Level.SEVERE, "uncaught exception in thread " + thread.getName(), e);
+            recorder.dump();
+        });
+        LockProfiler locks = new LockProfiler(config.lockProfiling);
+        locks.startReports(logger, config.lockReportSeconds);
+        Env env = new Env(logger, config, ui, util, recorder, metrics, locks, config.newClock());
+
+        // create the game entities and play (the dealer thread runs the dealer, or the actor engine running the
+        // dealer and the players)
+        game = new Game(env, players, "dealer");
+        try {
+            game.play();
+            // shutdown stuff
+            if (!xButtonPressed && config.endGamePauseMillies > 0) Thread.sleep(config.endGamePauseMillies);
+        } catch (InterruptedException ignored) {
+        } finally {
+            logger.severe("thanks for playing... it was fun!");
+            System.out.println("Thanks for playing... it was fun!");
+            ThreadLogger.logStop(logger, Thread.currentThread().getName());
+            if (!xButtonPressed) env.ui.dispose();
+            recorder.dump();
+            recorder.unregister();
+            logger.info(metrics.summary());
+            metrics.unregister();
+            locks.stopReports();
+            if (locks.isEnabled()) logger.info(locks.report());
+            for (Handler h : logger.getHandlers()) h.flush();
         }
     }
 
@@ -88,18 +104,16 @@ public class Main {
 
         //just to make our log file nicer :)
         SimpleDateFormat format = new SimpleDateFormat("M-d_HH-mm-ss");
-        FileHandler handler;
+        logName = format.format(Calendar.getInstance().getTime());
         try {
-            //noinspection ResultOfMethodCallIgnored
-            new File("./logs/").mkdirs();
-            handler = new FileHandler("./logs/" + format.format(Calendar.getInstance().getTime()) + ".log");
+            logHandler = new RotatingLogHandler(Paths.get("./logs/"), logName);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
 
         java.util.logging.Logger logger = java.util.logging.Logger.getLogger("SetGameLogger");
         logger.setUseParentHandlers(false);
-        logger.addHandler(handler);
+        logger.addHandler(logHandler);
         setLoggerLevelAndFormat(logger, Level.ALL, "[%1$tT.%1$tL] [%2$-7s] %3$s%n");
 
         return logger;
@@ -112,7 +126,7 @@ public class Main {
             @Override
             public synchronized String format(LogRecord lr) {
                 return String.format(format, new Date(lr.getMillis()),
-                        lr.getLevel().getLocalizedName(), lr.getMessage()
+                        lr.getLevel().getLocalizedName(), formatMessage(lr)
                 );
             }
         }));
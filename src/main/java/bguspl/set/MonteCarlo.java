@@ -0,0 +1,235 @@
+package bguspl.set;
+
+import bguspl.set.ex.Simulator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * This class plays many games with the discrete-event {@link Simulator}, spread over all the cores, and reports
+ * statistics of the games: their simulated length, the reshuffles, points, penalties and the spread of the scores.
+ * Each game gets its own seed drawn from the run's seed, so a run gives the same statistics with any number of threads.
+ * Usage: java -cp target/classes bguspl.set.MonteCarlo [option=value ...] [Property=Value ...]
+ * The options are games (default 10000), players (the number of computer players, default 4), threads (default the
+ * number of cores), seed (default 1), press (the mean milliseconds between two key presses of a player, default 100),
+ * claim (the milliseconds a claim takes to reach the dealer, default 0), limit (the simulated seconds a game is cut at,
+ * default 3600) and config (a properties file the game settings are read from). Any other Property=Value overrides a
+ * game setting (e.g. TurnTimeoutSeconds=30). With format=csv the results are printed as a CSV row (header=false omits
+ * the header row).
+ */
+public class MonteCarlo {
+
+    /**
+     * The game settings of a run (before the config file and the overrides).
+     */
+    private static final String[][] DEFAULTS = {
+            {"HumanPlayers", "0"}, {"LogLevel", "OFF"}, {"FlightRecorderEvents", "0"}, {"Hints", "false"}};
+
+    /**
+     * The columns of a CSV result row.
+     */
+    static final String CSV_HEADER = "players,games,threads,seconds,games_per_s,cut,length_mean_s,length_p50_s,"
+            + "length_p99_s,reshuffles_mean,points_mean,penalties_mean,stale_mean,spread_mean,spread_max";
+
+    private final Properties settings;
+    private final long pressMillis;
+    private final long claimMillis;
+    private final long limitMillis;
+
+    /**
+     * @param settings    - the game settings (the player count and the seed are set per game).
+     * @param pressMillis - the mean time between two key presses of a player.
+     * @param claimMillis - the time a claim takes to reach the dealer.
+     * @param limitMillis - the simulated time a game is cut at.
+     */
+    public MonteCarlo(Properties settings, long pressMillis, long claimMillis, long limitMillis) {
+        this.settings = settings;
+        this.pressMillis = pressMillis;
+        this.claimMillis = claimMillis;
+        this.limitMillis = limitMillis;
+    }
+
+    /**
+     * Plays the games, each thread taking the next game until all are played.
+     *
+     * @param players - the number of computer players.
+     * @param games   - the number of games.
+     * @param threads - the number of threads playing games.
+     * @param seed    - the seed the games' seeds are drawn from.
+     * @return - the outcome of each game, in the order of their seeds.
+     */
+    public Simulator.Result[] run(int players, int games, int threads, long seed) throws InterruptedException {
+        long[] seeds = new SplittableRandom(seed).longs(games).map(value -> value | 1).toArray();
+        Simulator.Result[] results = new Simulator.Result[games];
+        AtomicInteger next = new AtomicInteger();
+
+        Properties properties = new Properties();
+        properties.putAll(settings);
+        properties.setProperty("ComputerPlayers", Integer.toString(players));
+        Logger sharedLogger = logger();
+        Config shared = new Config(sharedLogger, properties);
+        Util util = new UtilImpl(shared);
+        UserInterface ui = new UserInterfaceDecorator(sharedLogger, util, null);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Callable<Void>> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            workers.add(() -> {
+                Logger logger = logger();
+                Properties gameProperties = new Properties();
+                gameProperties.putAll(properties);
+                for (int game = next.getAndIncrement(); game < games; game = next.getAndIncrement()) {
+                    gameProperties.setProperty("Seed", Long.toString(seeds[game]));
+                    Config config = new Config(logger, gameProperties);
+                    Env env = new Env(logger, config, ui, util);
+                    results[game] = new Simulator(env, pressMillis, claimMillis, limitMillis).run();
+                }
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> worker : pool.invokeAll(workers))
+                worker.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("a simulated game failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return results;
+    }
+
+    private static Logger logger() {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        return logger;
+    }
+
+    /**
+     * The statistics of a run.
+     */
+    static final class Summary {
+        final int players, games, threads;
+        final double seconds;
+        int cut;
+        double lengthMean, reshufflesMean, pointsMean, penaltiesMean, staleMean, spreadMean;
+        double lengthP50, lengthP99;
+        int spreadMax;
+
+        Summary(int players, int threads, double seconds, Simulator.Result[] results) {
+            this.players = players;
+            this.games = results.length;
+            this.threads = threads;
+            this.seconds = seconds;
+            long[] lengths = new long[results.length];
+            for (int i = 0; i < results.length; i++) {
+                Simulator.Result result = results[i];
+                lengths[i] = result.millis;
+                if (!result.finished)
+                    cut++;
+                lengthMean += result.millis;
+                reshufflesMean += result.reshuffles;
+                pointsMean += result.points;
+                penaltiesMean += result.penalties;
+                staleMean += result.staleClaims;
+                spreadMean += result.spread();
+                spreadMax = Math.max(spreadMax, result.spread());
+            }
+            int n = Math.max(1, games);
+            lengthMean /= n * 1000.0;
+            reshufflesMean /= n;
+            pointsMean /= n;
+            penaltiesMean /= n;
+            staleMean /= n;
+            spreadMean /= n;
+            Arrays.sort(lengths);
+            lengthP50 = percentile(lengths, 0.5) / 1000.0;
+            lengthP99 = percentile(lengths, 0.99) / 1000.0;
+        }
+
+        private static long percentile(long[] sorted, double fraction) {
+            if (sorted.length == 0)
+                return 0;
+            return sorted[(int) Math.min(sorted.length - 1, Math.max(0, Math.ceil(fraction * sorted.length) - 1))];
+        }
+
+        double gamesPerSecond() {
+            return seconds > 0 ? games / seconds : 0;
+        }
+
+        String toCsv() {
+            return String.format(Locale.ROOT, "%d,%d,%d,%.3f,%.1f,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%d",
+                    players, games, threads, seconds, gamesPerSecond(), cut, lengthMean, lengthP50, lengthP99,
+                    reshufflesMean, pointsMean, penaltiesMean, staleMean, spreadMean, spreadMax);
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Properties options = new Properties();
+        Properties overrides = new Properties();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals <= 0) {
+                System.out.println("usage: java bguspl.set.MonteCarlo [games=10000] [players=4] [threads=8] [seed=1]"
+                        + " [press=100] [claim=0] [limit=3600] [config=config.properties] [format=csv [header=false]]"
+                        + " [Property=Value ...]");
+                return;
+            }
+            String key = arg.substring(0, equals);
+            (Character.isLowerCase(key.charAt(0)) ? options : overrides).setProperty(key, arg.substring(equals + 1));
+        }
+
+        Properties settings = new Properties();
+        for (String[] setting : DEFAULTS)
+            settings.setProperty(setting[0], setting[1]);
+        if (options.containsKey("config")) {
+            try (InputStream in = Files.newInputStream(Paths.get(options.getProperty("config")))) {
+                settings.load(in);
+            }
+        }
+        settings.putAll(overrides);
+
+        int games = Integer.parseInt(options.getProperty("games", "10000"));
+        int players = Integer.parseInt(options.getProperty("players", "4"));
+        int threads = Integer.parseInt(options.getProperty("threads", Integer.toString(Runtime.getRuntime().availableProcessors())));
+        long seed = Long.parseLong(options.getProperty("seed", "1"));
+        long press = (long) Double.parseDouble(options.getProperty("press", "100"));
+        long claim = (long) Double.parseDouble(options.getProperty("claim", "0"));
+        long limit = (long) (Double.parseDouble(options.getProperty("limit", "3600")) * 1000);
+        boolean csv = options.getProperty("format", "table").equals("csv");
+
+        MonteCarlo monteCarlo = new MonteCarlo(settings, press, claim, limit);
+        long start = System.nanoTime();
+        Simulator.Result[] results = monteCarlo.run(players, games, Math.max(1, threads), seed);
+        Summary summary = new Summary(players, Math.max(1, threads), (System.nanoTime() - start) / 1e9, results);
+
+        if (csv) {
+            if (Boolean.parseBoolean(options.getProperty("header", "true")))
+                System.out.println(CSV_HEADER);
+            System.out.println(summary.toCsv());
+        } else {
+            System.out.printf("%d games of %d players on %d threads in %.2fs (%.0f games/s), %d cut at %ds%n",
+                    summary.games, players, summary.threads, summary.seconds, summary.gamesPerSecond(), summary.cut,
+                    limit / 1000);
+            System.out.printf("game length: mean %.1fs, p50 %.1fs, p99 %.1fs%n", summary.lengthMean, summary.lengthP50,
+                    summary.lengthP99);
+            System.out.printf("per game: %.2f reshuffles, %.2f points, %.2f penalties, %.2f stale claims%n",
+                    summary.reshufflesMean, summary.pointsMean, summary.penaltiesMean, summary.staleMean);
+            System.out.printf("score spread: mean %.2f, max %d%n", summary.spreadMean, summary.spreadMax);
+        }
+    }
+}
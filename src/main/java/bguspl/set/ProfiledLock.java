@@ -0,0 +1,179 @@
+package bguspl.set;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * A lock taken by one of the game's operations, measured by a LockProfiler site (see LockProfiler.lock): the
+ * operations taking the same lock each get their own ProfiledLock wrapping it, and use it as a plain Lock.
+ * Waiting on a condition made by newCondition is not counted in the hold time of the operation holding the lock.
+ * Note: a thread holding the same lock twice (through two operations) is measured by the inner one only.
+ */
+public class ProfiledLock implements Lock {
+
+    /**
+     * The site holding a lock in a thread, and since when (shared by the profiled locks of the same lock).
+     */
+    static final class Hold {
+        LockProfiler.Site site;
+        long acquired;
+    }
+
+    private final Lock lock;
+    private final LockProfiler.Site site;
+
+    /**
+     * This thread's hold of the lock (null if profiling is disabled).
+     */
+    private final ThreadLocal<Hold> holds;
+
+    ProfiledLock(Lock lock, LockProfiler.Site site, ThreadLocal<Hold> holds) {
+        this.lock = lock;
+        this.site = site;
+        this.holds = holds;
+    }
+
+    @Override
+    public void lock() {
+        long entered = site.enter();
+        lock.lock();
+        held(entered);
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        long entered = site.enter();
+        lock.lockInterruptibly();
+        held(entered);
+    }
+
+    @Override
+    public boolean tryLock() {
+        long entered = site.enter();
+        if (!lock.tryLock())
+            return false;
+        held(entered);
+        return true;
+    }
+
+    @Override
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+        long entered = site.enter();
+        if (!lock.tryLock(time, unit))
+            return false;
+        held(entered);
+        return true;
+    }
+
+    @Override
+    public void unlock() {
+        if (holds != null) {
+            Hold hold = holds.get();
+            site.exit(hold.acquired);
+            hold.acquired = 0;
+        }
+        lock.unlock();
+    }
+
+    @Override
+    public Condition newCondition() {
+        return new ProfiledCondition(lock.newCondition());
+    }
+
+    private void held(long entered) {
+        long acquired = site.acquired(entered);
+        if (holds != null) {
+            Hold hold = holds.get();
+            hold.site = site;
+            hold.acquired = acquired;
+        }
+    }
+
+    /**
+     * A condition pausing the hold time of the site holding the lock while it waits.
+     */
+    private final class ProfiledCondition implements Condition {
+
+        private final Condition condition;
+
+        ProfiledCondition(Condition condition) {
+            this.condition = condition;
+        }
+
+        private Hold pause() {
+            if (holds == null)
+                return null;
+            Hold hold = holds.get();
+            if (hold.site != null)
+                hold.acquired = hold.site.pause(hold.acquired);
+            return hold;
+        }
+
+        private void resume(Hold hold) {
+            if (hold != null && hold.site != null)
+                hold.acquired = hold.site.resumed();
+        }
+
+        @Override
+        public void await() throws InterruptedException {
+            Hold hold = pause();
+            try {
+                condition.await();
+            } finally {
+                resume(hold);
+            }
+        }
+
+        @Override
+        public void awaitUninterruptibly() {
+            Hold hold = pause();
+            try {
+                condition.awaitUninterruptibly();
+            } finally {
+                resume(hold);
+            }
+        }
+
+        @Override
+        public long awaitNanos(long nanosTimeout) throws InterruptedException {
+            Hold hold = pause();
+            try {
+                return condition.awaitNanos(nanosTimeout);
+            } finally {
+                resume(hold);
+            }
+        }
+
+        @Override
+        public boolean await(long time, TimeUnit unit) throws InterruptedException {
+            Hold hold = pause();
+            try {
+                return condition.await(time, unit);
+            } finally {
+                resume(hold);
+            }
+        }
+
+        @Override
+        public boolean awaitUntil(Date deadline) throws InterruptedException {
+            Hold hold = pause();
+            try {
+                return condition.awaitUntil(deadline);
+            } finally {
+                resume(hold);
+            }
+        }
+
+        @Override
+        public void signal() {
+            condition.signal();
+        }
+
+        @Override
+        public void signalAll() {
+            condition.signalAll();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This class is a log handler writing a game's log to <base>.log through a buffered file channel.
+ * When the file reaches the size limit it is compressed to <base>.<n>.log.gz and a new <base>.log is started; only the
+ * most recent files of the game are kept. The logs of old games are removed by retainGames.
+ */
+public class RotatingLogHandler extends Handler {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private final String base;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    /**
+     * The size limit of the log file (0 for none) and the maximal number of files kept for the game (active included).
+     */
+    private long maxBytes;
+    private int maxFiles = 1;
+
+    private FileChannel channel;
+    private long size;
+    private int segments;
+
+    /**
+     * @param directory - the logs directory.
+     * @param base      - the name of the game's log files (without extension).
+     */
+    public RotatingLogHandler(Path directory, String base) throws IOException {
+        this.directory = directory;
+        this.base = base;
+        setFormatter(new SimpleFormatter());
+        Files.createDirectories(directory);
+        open();
+    }
+
+    /**
+     * @param maxBytes - the size of the log file that triggers a rotation (0 for no rotation).
+     * @param maxFiles - the maximal number of log files kept for the game, including the active one.
+     */
+    public synchronized void setLimits(long maxBytes, int maxFiles) {
+        this.maxBytes = maxBytes;
+        this.maxFiles = Math.max(1, maxFiles);
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(directory.resolve(base + ".log"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        size = 0;
+    }
+
+    @Override
+    public synchronized void publish(LogRecord record) {
+        if (channel == null || !isLoggable(record))
+            return;
+        byte[] bytes;
+        try {
+            bytes = getFormatter().format(record).getBytes(charset());
+        } catch (Exception e) {
+            reportError(null, e, ErrorManager.FORMAT_FAILURE);
+            return;
+        }
+
+        try {
+            if (bytes.length > buffer.remaining())
+                drain();
+            if (bytes.length > buffer.capacity())
+                write(ByteBuffer.wrap(bytes));
+            else
+                buffer.put(bytes);
+            size += bytes.length;
+            if (maxBytes > 0 && size >= maxBytes)
+                rotate();
+        } catch (IOException e) {
+            reportError(null, e, ErrorManager.WRITE_FAILURE);
+        }
+    }
+
+    private Charset charset() {
+        return getEncoding() != null ? Charset.forName(getEncoding()) : StandardCharsets.UTF_8;
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        write(buffer);
+        buffer.clear();
+    }
+
+    private void write(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining())
+            channel.write(bytes);
+    }
+
+    /**
+     * Compresses the full log file into the next segment, drops the oldest segments and starts a new log file.
+     */
+    private void rotate() throws IOException {
+        drain();
+        channel.close();
+
+        Path full = directory.resolve(base + ".log");
+        Path segment = directory.resolve(base + "." + ++segments + ".log.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(segment), BUFFER_SIZE)) {
+            Files.copy(full, out);
+        }
+        Files.deleteIfExists(directory.resolve(base + "." + (segments - maxFiles + 1) + ".log.gz"));
+        open();
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (channel == null)
+            return;
+        try {
+            drain();
+        } catch (IOException e) {
+            reportError(null, e, ErrorManager.FLUSH_FAILURE);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (channel == null)
+            return;
+        flush();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            reportError(null, e, ErrorManager.CLOSE_FAILURE);
+        }
+        channel = null;
+    }
+
+    /**
+     * Removes the files of all but the most recent games from the logs directory (the files of a game share the name
+     * up to the first dot).
+     *
+     * @param directory - the logs directory.
+     * @param games     - the number of games to keep (0 to keep all).
+     * @param current   - the name of the current game's files (never removed).
+     */
+    public static void retainGames(Path directory, int games, String current) throws IOException {
+        if (games <= 0 || !Files.isDirectory(directory))
+            return;
+        Map<String, List<Path>> byGame;
+        try (Stream<Path> files = Files.list(directory)) {
+            byGame = files.filter(Files::isRegularFile)
+                    .collect(Collectors.groupingBy(file -> file.getFileName().toString().split("\\.", 2)[0]));
+        }
+        byGame.remove(current);
+
+        List<String> oldestFirst = new ArrayList<>(byGame.keySet());
+        oldestFirst.sort(Comparator.comparingLong(game -> lastModified(byGame.get(game))));
+        for (String game : oldestFirst.subList(0, Math.max(0, oldestFirst.size() - (games - 1))))
+            for (Path file : byGame.get(game))
+                Files.deleteIfExists(file);
+    }
+
+    private static long lastModified(List<Path> files) {
+        long last = 0;
+        for (Path file : files) {
+            try {
+                last = Math.max(last, Files.getLastModifiedTime(file).toMillis());
+            } catch (IOException ignored) {
+            }
+        }
+        return last;
+    }
+}
@@ -0,0 +1,247 @@
+package bguspl.set;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A clock whose time only moves when the engine is idle: time stands still while the engine's tasks run, and once no
+ * task is running (and no thread is free to run a queued one) it jumps straight to the next timer or sleeper deadline.
+ * A game with realistic timeouts, freezes and table delays is then played as fast as the engine can process it.
+ * Only the work submitted through track counts (a tracked task that sleeps is idle until it wakes up), so the clock
+ * suits engines whose threads only run tracked tasks, i.e. the actor engine; a thread blocking elsewhere is invisible
+ * to it. Timers due at the same time run in the order they were scheduled.
+ */
+public class SimulatedClock implements Clock {
+
+    /**
+     * A timer task or a sleeping thread, waiting for the time to reach its deadline.
+     */
+    private static final class Entry implements Comparable<Entry> {
+        final long time;
+        final long sequence;
+        final Runnable task;
+        final SimulatedTimers timers;
+        final boolean tracked;
+        boolean woken;
+
+        Entry(long time, long sequence, Runnable task, SimulatedTimers timers, boolean tracked) {
+            this.time = time;
+            this.sequence = sequence;
+            this.task = task;
+            this.timers = timers;
+            this.tracked = tracked;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            return time != other.time ? Long.compare(time, other.time) : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private final class SimulatedTimers implements Timers {
+        private volatile boolean shutdown;
+
+        @Override
+        public void schedule(Runnable task, long millis) {
+            if (shutdown)
+                throw new RejectedExecutionException("the timers were shut down");
+            List<Runnable> due;
+            synchronized (lock) {
+                queue.add(new Entry(now + Math.max(0, millis), sequence++, task, this, false));
+                due = advance();
+            }
+            runDue(due);
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+            synchronized (lock) {
+                queue.removeIf(entry -> entry.timers == this);
+            }
+        }
+    }
+
+    private final Object lock = new Object();
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>();
+
+    /**
+     * True iff the current thread is running a tracked task.
+     */
+    private final ThreadLocal<Boolean> running = ThreadLocal.withInitial(() -> false);
+
+    private long now;
+    private long sequence;
+
+    /**
+     * The tracked tasks waiting for a thread, the ones running (including due timer tasks) and the ones sleeping, and
+     * the number of threads running them.
+     */
+    private int queuedTasks;
+    private int runningTasks;
+    private int sleepingTasks;
+    private int threads = Integer.MAX_VALUE;
+
+    /**
+     * @param start - the time the clock starts at, in milliseconds.
+     */
+    public SimulatedClock(long start) {
+        now = start;
+    }
+
+    public SimulatedClock() {
+        this(0);
+    }
+
+    @Override
+    public long millis() {
+        synchronized (lock) {
+            return now;
+        }
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException {
+        if (millis <= 0)
+            return;
+        boolean tracked = running.get();
+        Entry sleeper;
+        List<Runnable> due;
+        synchronized (lock) {
+            sleeper = new Entry(now + millis, sequence++, null, null, tracked);
+            queue.add(sleeper);
+            if (tracked) {
+                runningTasks--;
+                sleepingTasks++;
+            }
+            due = advance();
+        }
+        runDue(due);
+        synchronized (lock) {
+            try {
+                while (!sleeper.woken)
+                    lock.wait();
+            } catch (InterruptedException e) {
+                if (!sleeper.woken) {
+                    queue.remove(sleeper);
+                    if (tracked) {
+                        sleepingTasks--;
+                        runningTasks++;
+                    }
+                }
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public Timers newTimers(String name) {
+        return new SimulatedTimers();
+    }
+
+    @Override
+    public Executor track(Executor executor, int threads) {
+        synchronized (lock) {
+            this.threads = threads;
+        }
+        return task -> {
+            synchronized (lock) {
+                queuedTasks++;
+            }
+            try {
+                executor.execute(() -> {
+                    synchronized (lock) {
+                        queuedTasks--;
+                        runningTasks++;
+                    }
+                    running.set(true);
+                    try {
+                        task.run();
+                    } finally {
+                        running.set(false);
+                        runDue(finished(false));
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                runDue(finished(true));
+                throw e;
+            }
+        };
+    }
+
+    /**
+     * Called when a task is done (or was rejected before it ran).
+     *
+     * @return - the timer tasks to run, if the engine became idle.
+     */
+    private List<Runnable> finished(boolean rejected) {
+        synchronized (lock) {
+            if (rejected)
+                queuedTasks--;
+            else
+                runningTasks--;
+            return advance();
+        }
+    }
+
+    /**
+     * @return - true iff no task is running and no thread is free to run a queued task. Called with the lock held.
+     */
+    private boolean idle() {
+        return runningTasks == 0 && (queuedTasks == 0 || sleepingTasks >= threads);
+    }
+
+    /**
+     * Moves the time to the next deadline(s) while the engine is idle: wakes the sleepers and collects the timer tasks
+     * due (counted as running until they are run). Called with the lock held.
+     *
+     * @return - the timer tasks to run.
+     */
+    private List<Runnable> advance() {
+        List<Runnable> due = new ArrayList<>();
+        while (idle() && !queue.isEmpty()) {
+            now = Math.max(now, queue.peek().time);
+            boolean wokeUntracked = false;
+            while (!queue.isEmpty() && queue.peek().time <= now) {
+                Entry entry = queue.poll();
+                if (entry.task == null) {
+                    entry.woken = true;
+                    if (entry.tracked) {
+                        sleepingTasks--;
+                        runningTasks++;
+                    } else {
+                        wokeUntracked = true;
+                    }
+                } else if (!entry.timers.shutdown) {
+                    runningTasks++;
+                    due.add(entry.task);
+                }
+            }
+            lock.notifyAll();
+            if (wokeUntracked)
+                break;
+        }
+        return due.isEmpty() ? Collections.<Runnable>emptyList() : due;
+    }
+
+    /**
+     * Runs the due timer tasks, and the ones that become due when they leave the engine idle.
+     */
+    private void runDue(List<Runnable> due) {
+        while (!due.isEmpty()) {
+            List<Runnable> next = new ArrayList<>();
+            for (Runnable task : due) {
+                try {
+                    task.run();
+                } finally {
+                    next.addAll(finished(false));
+                }
+            }
+            due = next;
+        }
+    }
+}
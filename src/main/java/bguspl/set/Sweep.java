@@ -0,0 +1,198 @@
+package bguspl.set;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class sweeps a grid of game settings with the headless {@link Benchmark}: every combination of the given setting
+ * values is a cell, and each cell is measured for each player count and repeat in its own JVM (so the thread, allocation
+ * and GC figures of one run do not leak into another), several JVMs at a time if asked. The results are written as CSV:
+ * the cell's setting values followed by the benchmark columns.
+ * Usage: java -cp target/classes bguspl.set.Sweep [option=value ...] [Property=Value,Value ...]
+ * The options are players (a comma separated list, default 2,4,8), repeats (the number of seeds per cell, default 3),
+ * warmup and duration (seconds per run, default 2 and 10), forks (the number of JVMs running at a time, default 1),
+ * jvm (space separated options for the JVMs, e.g. jvm="-Xmx512m -XX:+UseParallelGC"), config (a properties file the
+ * game settings are read from) and out (the CSV file, default the standard output).
+ * Settings that change together are joined with '/', e.g. Rows/Columns=3/4,4/5 sweeps 3x4 and 4x5 tables.
+ */
+public class Sweep {
+
+    /**
+     * A setting (or settings joined with '/') and the values it is swept over.
+     */
+    private static final class Dimension {
+        final String[] keys;
+        final String[] values;
+
+        Dimension(String keys, String values) {
+            this.keys = keys.split("/");
+            this.values = values.split(",");
+            for (String value : this.values)
+                if (value.split("/").length != this.keys.length)
+                    throw new IllegalArgumentException("the value " + value + " does not match the settings " + keys);
+        }
+    }
+
+    private final List<Dimension> dimensions = new ArrayList<>();
+    private final List<String> benchmarkOptions = new ArrayList<>();
+    private final List<String> jvmOptions = new ArrayList<>();
+
+    /**
+     * @return - the settings of each cell of the grid, as Property=Value arguments of the benchmark.
+     */
+    private List<List<String>> cells() {
+        List<List<String>> cells = new ArrayList<>();
+        cells.add(new ArrayList<>());
+        for (Dimension dimension : dimensions) {
+            List<List<String>> expanded = new ArrayList<>();
+            for (List<String> cell : cells) {
+                for (String value : dimension.values) {
+                    List<String> next = new ArrayList<>(cell);
+                    String[] parts = value.split("/");
+                    for (int i = 0; i < parts.length; i++)
+                        next.add(dimension.keys[i].trim() + "=" + parts[i].trim());
+                    expanded.add(next);
+                }
+            }
+            cells = expanded;
+        }
+        return cells;
+    }
+
+    private String header() {
+        StringBuilder header = new StringBuilder();
+        for (Dimension dimension : dimensions)
+            for (String key : dimension.keys)
+                header.append(key.trim()).append(',');
+        return header.append(Benchmark.CSV_HEADER).toString();
+    }
+
+    /**
+     * Runs the benchmark of a cell with one player count and one seed in a new JVM.
+     *
+     * @return - the CSV rows printed by the benchmark, each prefixed with the cell's setting values.
+     */
+    private List<String> runCell(List<String> cell, String players, int seed) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(jvmOptions);
+        command.add("-Djava.awt.headless=true");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Benchmark.class.getName());
+        command.add("format=csv");
+        command.add("header=false");
+        command.add("players=" + players);
+        command.add("seeds=" + seed);
+        command.addAll(benchmarkOptions);
+        command.addAll(cell);
+
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        StringBuilder prefix = new StringBuilder();
+        for (String setting : cell)
+            prefix.append(setting.substring(setting.indexOf('=') + 1)).append(',');
+        List<String> rows = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine())
+                if (!line.isEmpty())
+                    rows.add(prefix + line);
+        }
+        int exitCode = process.waitFor();
+        if (exitCode != 0)
+            System.err.println("warning: the run " + cell + " players=" + players + " seed=" + seed + " exited with " + exitCode);
+        return rows;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Sweep sweep = new Sweep();
+        String players = "2,4,8";
+        int repeats = 3;
+        int forks = 1;
+        String out = null;
+        String warmup = "2";
+        String duration = "10";
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals <= 0) {
+                System.out.println("usage: java bguspl.set.Sweep [players=2,4,8] [repeats=3] [warmup=2] [duration=10] [forks=1]"
+                        + " [jvm=\"-Xmx512m\"] [config=config.properties] [out=sweep.csv] [Property=Value,Value ...]");
+                return;
+            }
+            String key = arg.substring(0, equals);
+            String value = arg.substring(equals + 1);
+            switch (key) {
+                case "players":
+                    players = value;
+                    break;
+                case "repeats":
+                    repeats = Integer.parseInt(value);
+                    break;
+                case "forks":
+                    forks = Math.max(1, Integer.parseInt(value));
+                    break;
+                case "out":
+                    out = value;
+                    break;
+                case "warmup":
+                    warmup = value;
+                    break;
+                case "duration":
+                    duration = value;
+                    break;
+                case "jvm":
+                    sweep.jvmOptions.addAll(Arrays.asList(value.trim().split("\\s+")));
+                    break;
+                case "config":
+                    sweep.benchmarkOptions.add(arg);
+                    break;
+                default:
+                    sweep.dimensions.add(new Dimension(key, value));
+            }
+        }
+        sweep.benchmarkOptions.add("warmup=" + warmup);
+        sweep.benchmarkOptions.add("duration=" + duration);
+
+        List<List<String>> cells = sweep.cells();
+        ExecutorService executor = Executors.newFixedThreadPool(forks);
+        List<Future<List<String>>> runs = new ArrayList<>();
+        for (List<String> cell : cells)
+            for (String count : players.split(","))
+                for (int seed = 1; seed <= repeats; seed++) {
+                    final int runSeed = seed;
+                    runs.add(executor.submit(() -> sweep.runCell(cell, count.trim(), runSeed)));
+                }
+        executor.shutdown();
+        System.err.println("sweeping " + cells.size() + " cells in " + runs.size() + " runs, " + forks + " at a time");
+
+        try (PrintWriter writer = out == null
+                ? new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+                : new PrintWriter(new OutputStreamWriter(new FileOutputStream(out), StandardCharsets.UTF_8))) {
+            writer.println(sweep.header());
+            writer.flush();
+            for (int i = 0; i < runs.size(); i++) {
+                try {
+                    for (String row : runs.get(i).get())
+                        writer.println(row);
+                } catch (ExecutionException e) {
+                    System.err.println("warning: run " + (i + 1) + " failed: " + e.getCause());
+                }
+                writer.flush();
+                if (out != null)
+                    System.err.println("run " + (i + 1) + "/" + runs.size() + " done");
+            }
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package bguspl.set;
+
+import bguspl.set.ex.Player;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * This class is a load harness: it runs a league of computer players (bots) in one JVM, many headless games at once,
+ * each seating a few of the bots in turn, and aggregates the results into standings. All the bots play the same
+ * (random) strategy, so the standings only show how the games' luck spreads, not which bot plays better.
+ * The games share the immutable resources (the config, unless each game gets its own seed, the Util lookup tables and
+ * the headless user interface); the card images are not loaded at all, as no game has a window.
+ * Note: the games also share the user interface and the metrics, so the metrics summary aggregates all the games
+ * (counters and latencies of games running at the same time are mixed), and is not a per-game measurement.
+ * Usage: java -cp target/classes bguspl.set.Tournament [option=value ...] [Property=Value ...]
+ * The options are games (default 100), bots (the size of the league, default 8), players (the bots seated in a game,
+ * default 4), parallel (the number of games running at a time, default the number of cores), seed (0 for different
+ * games every run, default 0) and config (a properties file the game settings are read from). Any other Property=Value
+ * overrides a game setting (e.g. Engine=actor Clock=simulated plays the games as fast as the engine can).
+ */
+public class Tournament {
+
+    /**
+     * The game settings of a tournament (before the config file and the overrides).
+     */
+    private static final String[][] DEFAULTS = {
+            {"HumanPlayers", "0"}, {"EndGamePauseSeconds", "0"}, {"LogLevel", "OFF"},
+            {"FlightRecorderEvents", "0"}, {"Hints", "false"}};
+
+    /**
+     * The record of a bot in the league.
+     */
+    static final class Standing {
+        final int bot;
+        int games, wins, points;
+
+        Standing(int bot) {
+            this.bot = bot;
+        }
+
+        double meanScore() {
+            return games == 0 ? 0 : (double) points / games;
+        }
+    }
+
+    /**
+     * The outcome of a game: the bot in each seat and its score.
+     */
+    static final class Outcome {
+        final int[] seats;
+        final int[] scores;
+
+        Outcome(int[] seats, int[] scores) {
+            this.seats = seats;
+            this.scores = scores;
+        }
+    }
+
+    private final Properties settings;
+    private final int bots;
+    private final int players;
+
+    /**
+     * @param settings - the game settings (the player count and the seed are set by the tournament).
+     * @param bots     - the size of the league.
+     * @param players  - the bots seated in a game.
+     */
+    public Tournament(Properties settings, int bots, int players) {
+        if (players > bots)
+            throw new IllegalArgumentException("a game seats " + players + " of only " + bots + " bots");
+        this.settings = settings;
+        this.bots = bots;
+        this.players = players;
+    }
+
+    /**
+     * @return - the bots seated in a game: the league's bots in turn, so each bot plays about as many games as the others.
+     */
+    int[] seats(int game) {
+        int[] seats = new int[players];
+        for (int i = 0; i < players; i++)
+            seats[i] = (game * players + i) % bots;
+        return seats;
+    }
+
+    /**
+     * Plays the games, at most the given number at a time.
+     *
+     * @param games    - the number of games.
+     * @param parallel - the number of games running at a time.
+     * @param seed     - the seed the games' seeds are drawn from (0 for unseeded games).
+     * @return - the outcome of each game.
+     */
+    Outcome[] run(int games, int parallel, long seed) throws InterruptedException {
+        Properties properties = new Properties();
+        properties.putAll(settings);
+        properties.setProperty("ComputerPlayers", Integer.toString(players));
+        properties.setProperty("Seed", "0");
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        Config shared = new Config(logger, properties);
+        Util util = new UtilImpl(shared);
+        GameMetrics metrics = new GameMetrics();
+        UserInterface ui = new UserInterfaceDecorator(logger, util, null, metrics);
+
+        Random seeds = new Random(seed);
+        long[] gameSeeds = new long[games];
+        for (int i = 0; i < games; i++)
+            gameSeeds[i] = seeds.nextLong() | 1;
+
+        Outcome[] outcomes = new Outcome[games];
+        AtomicInteger done = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(parallel);
+        List<Future<?>> runs = new ArrayList<>();
+        for (int i = 0; i < games; i++) {
+            final int game = i;
+            runs.add(executor.submit(() -> {
+                Config config = shared;
+                if (seed != 0) {
+                    Properties seeded = new Properties();
+                    seeded.putAll(properties);
+                    seeded.setProperty("Seed", Long.toString(gameSeeds[game]));
+                    config = new Config(logger, seeded);
+                }
+                Env env = new Env(logger, config, ui, util, FlightRecorder.disabled(), metrics, LockProfiler.disabled(),
+                        config.newClock());
+                Game hosted = new Game(env, new Player[config.players], "game-" + (game + 1));
+                hosted.play();
+                outcomes[game] = new Outcome(seats(game), hosted.scores());
+                System.err.println("game " + (game + 1) + " done (" + done.incrementAndGet() + "/" + games + ")");
+                return null;
+            }));
+        }
+        executor.shutdown();
+        try {
+            for (Future<?> run : runs)
+                run.get();
+        } catch (ExecutionException e) {
+            executor.shutdownNow();
+            throw new IllegalStateException("a game failed", e.getCause());
+        }
+        System.err.println(metrics.summary());
+        return outcomes;
+    }
+
+    /**
+     * @return - the standings of the league: the most wins first, then the most points (a shared first place is a win
+     * for each of the bots sharing it).
+     */
+    Standing[] standings(Outcome[] outcomes) {
+        Standing[] standings = new Standing[bots];
+        Arrays.setAll(standings, Standing::new);
+        for (Outcome outcome : outcomes) {
+            int max = Arrays.stream(outcome.scores).max().orElse(0);
+            for (int i = 0; i < outcome.seats.length; i++) {
+                Standing standing = standings[outcome.seats[i]];
+                standing.games++;
+                standing.points += outcome.scores[i];
+                if (outcome.scores[i] == max)
+                    standing.wins++;
+            }
+        }
+        Arrays.sort(standings, (a, b) -> a.wins != b.wins ? Integer.compare(b.wins, a.wins)
+                : a.points != b.points ? Integer.compare(b.points, a.points) : Integer.compare(a.bot, b.bot));
+        return standings;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Properties options = new Properties();
+        Properties overrides = new Properties();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals <= 0) {
+                System.out.println("usage: java bguspl.set.Tournament [games=100] [bots=8] [players=4] [parallel=8]"
+                        + " [seed=0] [config=config.properties] [Property=Value ...]");
+                return;
+            }
+            String key = arg.substring(0, equals);
+            (Character.isLowerCase(key.charAt(0)) ? options : overrides).setProperty(key, arg.substring(equals + 1));
+        }
+
+        Properties settings = new Properties();
+        for (String[] setting : DEFAULTS)
+            settings.setProperty(setting[0], setting[1]);
+        if (options.containsKey("config")) {
+            try (InputStream in = Files.newInputStream(Paths.get(options.getProperty("config")))) {
+                settings.load(in);
+            }
+        }
+        settings.putAll(overrides);
+
+        int games = Integer.parseInt(options.getProperty("games", "100"));
+        int bots = Integer.parseInt(options.getProperty("bots", "8"));
+        int players = Integer.parseInt(options.getProperty("players", "4"));
+        int parallel = Integer.parseInt(options.getProperty("parallel", Integer.toString(Runtime.getRuntime().availableProcessors())));
+        long seed = Long.parseLong(options.getProperty("seed", "0"));
+
+        Tournament tournament = new Tournament(settings, bots, players);
+        long start = System.nanoTime();
+        Outcome[] outcomes = tournament.run(games, Math.max(1, parallel), seed);
+
+        System.out.printf("%d games of %d bots out of %d, %d at a time, in %.1fs%n", games, players, bots, Math.max(1, parallel),
+                (System.nanoTime() - start) / 1e9);
+        System.out.printf("%4s %6s %6s %6s %8s %10s%n", "rank", "bot", "games", "wins", "points", "mean score");
+        Standing[] standings = tournament.standings(outcomes);
+        for (int i = 0; i < standings.length; i++) {
+            Standing standing = standings[i];
+            System.out.printf("%4d %6s %6d %6d %8d %10.2f%n", i + 1, "Bot " + (standing.bot + 1), standing.games, standing.wins,
+                    standing.points, standing.meanScore());
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package bguspl.set;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class collects user interface updates instead of applying them, so they can be applied later at once.
+ * Engine code can fill a batch while holding a lock and flush it once the critical section is done.
+ * Announcing the winners and disposing are not batched: they flush the batch and go straight to the delegate.
+ */
+public class UiBatch implements UserInterface {
+
+    private final List<UiEvent> events = new ArrayList<>();
+
+    /**
+     * The user interface the batch is flushed to.
+     */
+    private final UserInterface delegate;
+
+    /**
+     * @param delegate - the user interface the batch is flushed to.
+     */
+    public UiBatch(UserInterface delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * @return - the events collected so far, in order.
+     */
+    public List<UiEvent> events() {
+        return Collections.unmodifiableList(events);
+    }
+
+    public boolean isEmpty() {
+        return events.isEmpty();
+    }
+
+    /**
+     * Applies the collected events (coalesced) to the delegate and clears the batch.
+     */
+    public void flush() {
+        if (events.isEmpty())
+            return;
+        List<UiEvent> coalesced = coalesce(events);
+        events.clear();
+        delegate.apply(coalesced);
+    }
+
+    /**
+     * Drops the events that are superseded by later events of the same list:
+     * only the last countdown, elapsed time, freeze and score (per player) and card (per slot) update is kept;
+     * token updates before a removal of all the tokens (of the slot, or of the table) are dropped;
+     * only the last token update per player and slot is kept, and a token whose first update in the list places it
+     * and whose last update removes it is dropped altogether (it was not on the table before the list either).
+     *
+     * @param events - the events to coalesce, in order.
+     * @return - the events that still matter, in their original order (a new list).
+     */
+    public static List<UiEvent> coalesce(List<UiEvent> events) {
+        if (events.size() < 2)
+            return new ArrayList<>(events);
+
+        UiEvent[] kept = events.toArray(new UiEvent[0]);
+        Set<Long> seen = new HashSet<>();
+        Map<Long, UiEvent.Type> firstTokenUpdate = new HashMap<>();
+        for (UiEvent event : kept)
+            if (event.type == UiEvent.Type.PLACE_TOKEN || event.type == UiEvent.Type.REMOVE_TOKEN)
+                firstTokenUpdate.putIfAbsent(key(1, event.player, event.slot), event.type);
+        Set<Integer> clearedSlots = new HashSet<>();
+        boolean allCleared = false;
+        int count = kept.length;
+
+        // walk backwards, so the first event seen for a key is the one that wins
+        for (int i = kept.length - 1; i >= 0; --i) {
+            UiEvent event = kept[i];
+            boolean drop;
+            switch (event.type) {
+                case PLACE_TOKEN:
+                case REMOVE_TOKEN:
+                    long token = key(1, event.player, event.slot);
+                    drop = allCleared || clearedSlots.contains(event.slot) || !seen.add(token)
+                            // placed and removed in the same list
+                            || event.type == UiEvent.Type.REMOVE_TOKEN && firstTokenUpdate.get(token) == UiEvent.Type.PLACE_TOKEN;
+                    break;
+                case REMOVE_SLOT_TOKENS:
+                    drop = allCleared || !clearedSlots.add(event.slot);
+                    break;
+                case REMOVE_ALL_TOKENS:
+                    drop = allCleared;
+                    allCleared = true;
+                    break;
+                case PLACE_CARD:
+                case REMOVE_CARD:
+                    drop = !seen.add(key(2, 0, event.slot));
+                    break;
+                default:
+                    drop = !seen.add(key(3 + event.type.ordinal(), event.player, 0));
+                    break;
+            }
+            if (drop) {
+                kept[i] = null;
+                count--;
+            }
+        }
+
+        List<UiEvent> result = new ArrayList<>(count);
+        for (UiEvent event : kept)
+            if (event != null)
+                result.add(event);
+        return result;
+    }
+
+    private static long key(int kind, int player, int slot) {
+        return ((long) kind << 48) | ((long) (player + 1) << 24) | slot;
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        events.add(UiEvent.placeCard(card, slot));
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        events.add(UiEvent.removeCard(slot));
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        events.add(UiEvent.placeToken(player, slot));
+    }
+
+    @Override
+    public void removeTokens() {
+        events.add(UiEvent.removeTokens());
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        events.add(UiEvent.removeTokens(slot));
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        events.add(UiEvent.removeToken(player, slot));
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        events.add(UiEvent.setCountdown(millies, warn));
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        events.add(UiEvent.setElapsed(millies));
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        events.add(UiEvent.setFreeze(player, millies));
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        events.add(UiEvent.setScore(player, score));
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        flush();
+        delegate.announceWinner(players);
+    }
+
+    @Override
+    public void dispose() {
+        flush();
+        delegate.dispose();
+    }
+}
@@ -0,0 +1,140 @@
+package bguspl.set;
+
+/**
+ * This class represents a single user interface update, so updates can be collected and applied in batches.
+ */
+public final class UiEvent {
+
+    /**
+     * The user interface methods an event can stand for.
+     */
+    public enum Type {
+        PLACE_CARD, REMOVE_CARD, PLACE_TOKEN, REMOVE_TOKEN, REMOVE_SLOT_TOKENS, REMOVE_ALL_TOKENS,
+        COUNTDOWN, ELAPSED, FREEZE, SCORE
+    }
+
+    public final Type type;
+    public final int player;
+    public final int slot;
+    public final int card;
+    public final long value;
+    public final boolean warn;
+
+    private UiEvent(Type type, int player, int slot, int card, long value, boolean warn) {
+        this.type = type;
+        this.player = player;
+        this.slot = slot;
+        this.card = card;
+        this.value = value;
+        this.warn = warn;
+    }
+
+    public static UiEvent placeCard(int card, int slot) {
+        return new UiEvent(Type.PLACE_CARD, -1, slot, card, 0, false);
+    }
+
+    public static UiEvent removeCard(int slot) {
+        return new UiEvent(Type.REMOVE_CARD, -1, slot, -1, 0, false);
+    }
+
+    public static UiEvent placeToken(int player, int slot) {
+        return new UiEvent(Type.PLACE_TOKEN, player, slot, -1, 0, false);
+    }
+
+    public static UiEvent removeToken(int player, int slot) {
+        return new UiEvent(Type.REMOVE_TOKEN, player, slot, -1, 0, false);
+    }
+
+    public static UiEvent removeTokens(int slot) {
+        return new UiEvent(Type.REMOVE_SLOT_TOKENS, -1, slot, -1, 0, false);
+    }
+
+    public static UiEvent removeTokens() {
+        return new UiEvent(Type.REMOVE_ALL_TOKENS, -1, -1, -1, 0, false);
+    }
+
+    public static UiEvent setCountdown(long millies, boolean warn) {
+        return new UiEvent(Type.COUNTDOWN, -1, -1, -1, millies, warn);
+    }
+
+    public static UiEvent setElapsed(long millies) {
+        return new UiEvent(Type.ELAPSED, -1, -1, -1, millies, false);
+    }
+
+    public static UiEvent setFreeze(int player, long millies) {
+        return new UiEvent(Type.FREEZE, player, -1, -1, millies, false);
+    }
+
+    public static UiEvent setScore(int player, int score) {
+        return new UiEvent(Type.SCORE, player, -1, -1, score, false);
+    }
+
+    /**
+     * Calls the user interface method this event stands for.
+     *
+     * @param ui - the user interface to update.
+     */
+    public void applyTo(UserInterface ui) {
+        switch (type) {
+            case PLACE_CARD:
+                ui.placeCard(card, slot);
+                break;
+            case REMOVE_CARD:
+                ui.removeCard(slot);
+                break;
+            case PLACE_TOKEN:
+                ui.placeToken(player, slot);
+                break;
+            case REMOVE_TOKEN:
+                ui.removeToken(player, slot);
+                break;
+            case REMOVE_SLOT_TOKENS:
+                ui.removeTokens(slot);
+                break;
+            case REMOVE_ALL_TOKENS:
+                ui.removeTokens();
+                break;
+            case COUNTDOWN:
+                ui.setCountdown(value, warn);
+                break;
+            case ELAPSED:
+                ui.setElapsed(value);
+                break;
+            case FREEZE:
+                ui.setFreeze(player, value);
+                break;
+            case SCORE:
+                ui.setScore(player, (int) value);
+                break;
+        }
+    }
+
+    /**
+     * @return - the log message of this event (the same as the one of the matching UserInterfaceDecorator method).
+     */
+    @Override
+    public String toString() {
+        switch (type) {
+            case PLACE_CARD:
+                return "placing card " + card + " in slot " + slot;
+            case REMOVE_CARD:
+                return "removing card from slot " + slot;
+            case PLACE_TOKEN:
+                return "player " + (player + 1) + " placing token on slot " + slot;
+            case REMOVE_TOKEN:
+                return "removing player " + (player + 1) + " token from slot " + slot;
+            case REMOVE_SLOT_TOKENS:
+                return "removing tokens from slot " + slot;
+            case REMOVE_ALL_TOKENS:
+                return "removing all tokens";
+            case COUNTDOWN:
+                return "updating countdown to " + value;
+            case ELAPSED:
+                return "updating elapsed time to " + value;
+            case FREEZE:
+                return "setting player " + (player + 1) + " freeze to " + value;
+            default:
+                return "setting player " + (player + 1) + " score to " + value;
+        }
+    }
+}
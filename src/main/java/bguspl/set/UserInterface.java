@@ -1,5 +1,7 @@
 package bguspl.set;
 
+import java.util.List;
+
 /**
  * This interface contains all methods used to display the graphical user interface.
  */
@@ -18,6 +20,25 @@ public interface UserInterface {
      */
     void removeCard(int slot);
 
+    /**
+     * Draw several card images at once (the default implementation draws them one by one).
+     * @param cards - the card ids.
+     * @param slots - the slot numbers (respectively).
+     */
+    default void placeCards(int[] cards, int[] slots) {
+        for (int i = 0; i < cards.length; i++)
+            placeCard(cards[i], slots[i]);
+    }
+
+    /**
+     * Draw an empty card image in several slots at once (the default implementation draws them one by one).
+     * @param slots - the slot numbers.
+     */
+    default void removeCards(int[] slots) {
+        for (int slot : slots)
+            removeCard(slot);
+    }
+
     /**
      * Draw a player name text in the specified slot.
      * @param player - the card id.
@@ -72,6 +93,15 @@ public interface UserInterface {
      */
     void setScore(int player, int score);
 
+    /**
+     * Apply several updates at once (the default implementation applies them one by one).
+     * @param events - the updates, in order.
+     */
+    default void apply(List<UiEvent> events) {
+        for (UiEvent event : events)
+            event.applyTo(this);
+    }
+
     /**
      * Hide player score panel from view and show text announcing the winner(s).
      * If players length == 1, declare him as a winner.
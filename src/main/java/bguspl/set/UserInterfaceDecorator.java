@@ -2,6 +2,7 @@ package bguspl.set;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -10,85 +11,156 @@ public class UserInterfaceDecorator implements UserInterface {
     private final Logger logger;
     private final Util util;
     private final UserInterface ui;
+    private final GameMetrics metrics;
 
     public UserInterfaceDecorator(Logger logger, Util util, UserInterface ui) {
+        this(logger, util, ui, new GameMetrics());
+    }
+
+    /**
+     * @param metrics - the game metrics, counting the ui events.
+     */
+    public UserInterfaceDecorator(Logger logger, Util util, UserInterface ui, GameMetrics metrics) {
         this.ui = ui;
         this.logger = logger;
         this.util = util;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Logs a message without building it: the parameters are formatted into the pattern by the log writer, and
+     * nothing is done at all if the level is not logged.
+     */
+    private void log(String pattern, Object... params) {
+        if (logger.isLoggable(Level.SEVERE))
+            logger.log(Level.SEVERE, pattern, params);
+    }
 
-        if (ui == null) System.out.println("running without a user interface. Check logs.");
+    /**
+     * An int array printed by Arrays.toString only when it is logged.
+     */
+    private static final class IntArray {
+        private final int[] array;
+
+        IntArray(int[] array) {
+            this.array = array.clone();
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(array);
+        }
     }
 
     @Override
     public void placeCard(int card, int slot) {
-        logger.severe("placing card " + card + " in slot " + slot);
+        log("placing card {0,number,#} in slot {1,number,#}", card, slot);
         util.spin();
+        metrics.uiEvents(1);
         if (ui != null) ui.placeCard(card, slot);
     }
 
     @Override
     public void removeCard(int slot) {
-        logger.severe("removing card from slot " + slot);
+        log("removing card from slot {0,number,#}", slot);
         util.spin();
+        metrics.uiEvents(1);
         if (ui != null) ui.removeCard(slot);
     }
 
+    @Override
+    public void placeCards(int[] cards, int[] slots) {
+        log("placing cards {0} in slots {1}", new IntArray(cards), new IntArray(slots));
+        util.spin();
+        metrics.uiEvents(1);
+        if (ui != null) ui.placeCards(cards, slots);
+    }
+
+    @Override
+    public void removeCards(int[] slots) {
+        log("removing cards from slots {0}", new IntArray(slots));
+        util.spin();
+        metrics.uiEvents(1);
+        if (ui != null) ui.removeCards(slots);
+    }
+
     @Override
     public void placeToken(int player, int slot) {
-        logger.severe("player " + (player + 1) + " placing token on slot " + slot);
+        log("player {0,number,#} placing token on slot {1,number,#}", player + 1, slot);
         util.spin();
+        metrics.uiEvents(1);
         if (ui != null) ui.placeToken(player, slot);
     }
 
     @Override
     public void removeTokens() {
-        logger.severe("removing all tokens");
+        log("removing all tokens");
         util.spin();
+        metrics.uiEvents(1);
         if (ui != null) ui.removeTokens();
     }
 
     @Override
     public void removeTokens(int slot) {
-        logger.severe("removing tokens from slot " + slot);
+        log("removing tokens from slot {0,number,#}", slot);
         util.spin();
+        metrics.uiEvents(1);
         if (ui != null) ui.removeTokens(slot);
     }
 
     @Override
     public void removeToken(int player, int slot) {
-        logger.severe("removing player " + (player + 1) + " token from slot " + slot);
+        log("removing player {0,number,#} token from slot {1,number,#}", player + 1, slot);
         util.spin();
+        metrics.uiEvents(1);
         if (ui != null) ui.removeToken(player, slot);
     }
 
     @Override
     public void setCountdown(long millies, boolean warn) {
         if (!warn || millies % 1000L == 0L)
-            logger.severe("updating countdown to " + millies);
+            log("updating countdown to {0,number,#}", millies);
+        metrics.uiEvents(1);
         if (ui != null) ui.setCountdown(millies, warn);
     }
 
     @Override
     public void setElapsed(long millies) {
-        logger.severe("updating elapsed time to " + millies);
+        log("updating elapsed time to {0,number,#}", millies);
         util.spin();
+        metrics.uiEvents(1);
         if (ui != null) ui.setElapsed(millies);
     }
 
     @Override
     public void setFreeze(int player, long millies) {
-        logger.severe("setting player " + (player + 1) + " freeze to " + millies);
+        log("setting player {0,number,#} freeze to {1,number,#}", player + 1, millies);
         util.spin();
+        metrics.uiEvents(1);
         if (ui != null) ui.setFreeze(player, millies);
     }
 
     @Override
     public void setScore(int player, int score) {
-        logger.severe("setting player " + (player + 1) + " score to " + score);
+        log("setting player {0,number,#} score to {1,number,#}", player + 1, score);
         util.spin();
+        metrics.uiEvents(1);
         if (ui != null) ui.setScore(player, score);
     }
 
+    @Override
+    public void apply(List<UiEvent> events) {
+        List<UiEvent> coalesced = UiBatch.coalesce(events);
+        if (coalesced.isEmpty())
+            return;
+        for (UiEvent event : coalesced)
+            if (event.type != UiEvent.Type.COUNTDOWN || !event.warn || event.value % 1000L == 0L)
+                log("{0}", event);
+        metrics.uiEvents(coalesced.size());
+        util.spin();
+        if (ui != null) ui.apply(coalesced);
+    }
+
     @Override
     public void announceWinner(int[] players) {
         List<String> winners = Arrays.stream(players).mapToObj(id -> "player " + (id + 1)).collect(Collectors.toList());
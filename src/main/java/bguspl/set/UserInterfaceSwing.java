@@ -4,10 +4,16 @@ import bguspl.set.ex.Player;
 
 import javax.swing.*;
 import java.awt.*;
-import java.io.FileNotFoundException;
-import java.net.URL;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -23,14 +29,29 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
     private final PlayersPanel playersPanel;
     private final WinnerPanel winnerPanel;
     private final Config config;
+    private final CardImages cardImages;
+
+    /**
+     * The updates waiting to be applied by the next frame (filled by the game threads, drained on the EDT).
+     */
+    private final Queue<UiEvent> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean frameScheduled = new AtomicBoolean();
+    private final long frameMillis;
+    private volatile long lastFrame;
 
     static String intInBaseToPaddedString(int n, int padding, int base) {
         return format("%" + padding + "s", Integer.toString(n, base)).replace(' ', '0');
     }
 
     public UserInterfaceSwing(Logger logger, Config config, Player[] players) {
+        this(logger, config, new UtilImpl(config), players);
+    }
+
+    public UserInterfaceSwing(Logger logger, Config config, Util util, Player[] players) {
 
         this.config = config;
+        cardImages = new CardImages(logger, config, util);
+        frameMillis = config.maxFps > 0 ? 1000 / config.maxFps : 0;
         timerPanel = new TimerPanel();
         gamePanel = new GamePanel();
         playersPanel = new PlayersPanel();
@@ -102,39 +123,39 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
 
     private class GamePanel extends JLayeredPane {
 
-        private final Image emptyCard;
-        private final Image[] deck;
-        private final Image[][] grid;
-        private final boolean[][][] playerTokens;
-        private final JLabel[][] tokenText;
+        private final int[] grid;
 
-        private Image loadImageResource(String filename) {
-            URL imageResource = getClass().getClassLoader().getResource(filename);
-            if (imageResource == null)
-                throw new RuntimeException(new FileNotFoundException(filename));
-            return new ImageIcon(imageResource).getImage();
-        }
+        /**
+         * The board is drawn once into this buffer (a cell at a time) and copied to the screen on repaint.
+         */
+        private final BufferedImage board;
 
-        private GamePanel() {
+        /**
+         * The players having a token on each slot (bit i is set iff player i has a token on the slot).
+         */
+        private final BitSet[] playerTokens;
 
-            setPreferredSize(new Dimension(config.columns * config.cellWidth, config.rows * config.cellHeight));
+        /**
+         * The token label text of each set of players seen so far (a handful of distinct sets come up in a game).
+         */
+        private final Map<BitSet, String> tokenTextCache = new HashMap<>();
+        private final JLabel[][] tokenText;
 
-            // init deck and load all pictures from png files
-            assert config.featureSize < 10; // otherwise there will be naming conflicts
+        private GamePanel() {
 
-            // load the image resources
-            deck = new Image[config.deckSize];
-            for (int i = 0; i < config.deckSize; ++i)
-                deck[i] = loadImageResource("cards/" + intInBaseToPaddedString(i, config.featureCount, config.featureSize) + ".png");
-            emptyCard = loadImageResource("cards/empty_card.png");
+            setPreferredSize(new Dimension(config.columns * config.cellWidth, config.rows * config.cellHeight));
 
-            grid = new Image[config.rows][config.columns];
+            // the card pictures are loaded (or drawn) on demand (see CardImages)
+            grid = new int[config.tableSize];
+            Arrays.fill(grid, -1);
+            board = new BufferedImage(config.columns * config.cellWidth, config.rows * config.cellHeight, BufferedImage.TYPE_INT_RGB);
             tokenText = new JLabel[config.rows][config.columns];
-            playerTokens = new boolean[config.players][config.rows][config.columns];
+            playerTokens = new BitSet[config.tableSize];
+            Arrays.setAll(playerTokens, slot -> new BitSet(config.players));
             for (int row = 0; row < config.rows; row++) {
                 for (int column = 0; column < config.columns; column++) {
                     // init the cards on the table grid as empty cards
-                    grid[row][column] = emptyCard;
+                    drawCell(row * config.columns + column, cardImages.emptyCard());
 
                     // init the JLabel selection overlay
                     tokenText[row][column] = new JLabel("");
@@ -148,67 +169,94 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
             }
         }
 
-        private void placeCard(int slot, int card) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            grid[row][column] = deck[card];
-            validate();
-            repaint();
-        }
-
-        private void removeCard(int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            grid[row][column] = emptyCard;
-            validate();
-            repaint();
-        }
-
-        private void placeToken(int player, int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            playerTokens[player][row][column] = true;
-            tokenText[row][column].setText(generatePlayersTokenText(row, column));
-        }
-
-        private void removeTokens() {
-            for (int i = 0; i < config.tableSize; i++)
-                removeTokens(i);
-        }
-
-        private void removeTokens(int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            for (int player = 0; player < playerTokens.length; player++) {
-                playerTokens[player][row][column] = false;
-                tokenText[row][column].setText(generatePlayersTokenText(row, column));
+        /**
+         * Draws an image into the board buffer and marks the cell as dirty (only the cell is repainted).
+         */
+        private void drawCell(int slot, Image image) {
+            int x = slot % config.columns * config.cellWidth;
+            int y = slot / config.columns * config.cellHeight;
+            Graphics2D g = board.createGraphics();
+            try {
+                g.setColor(getBackground());
+                g.fillRect(x, y, config.cellWidth, config.cellHeight);
+                g.drawImage(image, x, y, this);
+            } finally {
+                g.dispose();
             }
+            repaint(x, y, config.cellWidth, config.cellHeight);
         }
 
-        private void removeToken(int player, int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            playerTokens[player][row][column] = false;
-            tokenText[row][column].setText(generatePlayersTokenText(row, column));
+        /**
+         * Applies the card and token events in a single pass: only the cells whose card changed are redrawn and
+         * each touched token label is updated once.
+         *
+         * @return - the events that are not about cards or tokens.
+         */
+        private List<UiEvent> apply(List<UiEvent> events) {
+            List<UiEvent> others = new ArrayList<>();
+            boolean[] touched = new boolean[config.tableSize];
+            for (UiEvent event : events) {
+                switch (event.type) {
+                    case PLACE_CARD:
+                        if (grid[event.slot] != event.card) {
+                            grid[event.slot] = event.card;
+                            drawCell(event.slot, cardImages.get(event.card));
+                        }
+                        break;
+                    case REMOVE_CARD:
+                        if (grid[event.slot] != -1) {
+                            grid[event.slot] = -1;
+                            drawCell(event.slot, cardImages.emptyCard());
+                        }
+                        break;
+                    case PLACE_TOKEN:
+                    case REMOVE_TOKEN:
+                        playerTokens[event.slot].set(event.player, event.type == UiEvent.Type.PLACE_TOKEN);
+                        touched[event.slot] = true;
+                        break;
+                    case REMOVE_SLOT_TOKENS:
+                        playerTokens[event.slot].clear();
+                        touched[event.slot] = true;
+                        break;
+                    case REMOVE_ALL_TOKENS:
+                        // only the slots that had tokens need a new label
+                        for (int slot = 0; slot < playerTokens.length; slot++) {
+                            if (!playerTokens[slot].isEmpty()) {
+                                playerTokens[slot].clear();
+                                touched[slot] = true;
+                            }
+                        }
+                        break;
+                    default:
+                        others.add(event);
+                }
+            }
+            for (int slot = 0; slot < touched.length; slot++) {
+                if (touched[slot]) {
+                    int row = slot / config.columns;
+                    int column = slot % config.columns;
+                    String text = generatePlayersTokenText(slot);
+                    if (!text.equals(tokenText[row][column].getText()))
+                        tokenText[row][column].setText(text);
+                }
+            }
+            return others;
         }
 
-        private String generatePlayersTokenText(int row, int column) {
-            String text = "";
-            for (int player = 0; player < config.players; player++) {
-                if (playerTokens[player][row][column])
-                    text = text.concat(config.playerNames[player] + ", ");
+        private String generatePlayersTokenText(int slot) {
+            BitSet players = playerTokens[slot];
+            String text = tokenTextCache.get(players);
+            if (text == null) {
+                text = players.stream().mapToObj(player -> config.playerNames[player]).collect(Collectors.joining(", "));
+                tokenTextCache.put((BitSet) players.clone(), text);
             }
-            if (text.length() < 2)
-                return "";
-            return text.substring(0, text.length() - 2);
+            return text;
         }
 
         @Override
         public void paintComponent(Graphics g) {
-            // draw card images
-            for (int row = 0; row < config.rows; row++)
-                for (int column = 0; column < config.columns; column++)
-                    g.drawImage(grid[row][column], (column * config.cellWidth), (row * config.cellHeight), this);
+            // copy the board buffer (Swing clips the copy to the dirty cells)
+            g.drawImage(board, 0, 0, this);
         }
     }
 
@@ -276,59 +324,133 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
 
     @Override
     public void placeCard(int card, int slot) {
-        gamePanel.placeCard(slot, card);
+        cardImages.prefetch(card);
+        post(UiEvent.placeCard(card, slot));
     }
 
     @Override
     public void removeCard(int slot) {
-        gamePanel.removeCard(slot);
+        post(UiEvent.removeCard(slot));
     }
 
     @Override
     public void placeToken(int player, int slot) {
-        gamePanel.placeToken(player, slot);
+        post(UiEvent.placeToken(player, slot));
     }
 
     @Override
     public void removeTokens() {
-        gamePanel.removeTokens();
+        post(UiEvent.removeTokens());
     }
 
     @Override
     public void removeTokens(int slot) {
-        gamePanel.removeTokens(slot);
+        post(UiEvent.removeTokens(slot));
     }
 
     @Override
     public void removeToken(int player, int slot) {
-        gamePanel.removeToken(player, slot);
+        post(UiEvent.removeToken(player, slot));
     }
 
     @Override
     public void setCountdown(long millies, boolean warn) {
-        timerPanel.setCountdown(millies, warn);
+        post(UiEvent.setCountdown(millies, warn));
     }
 
     @Override
     public void setElapsed(long millies) {
-        timerPanel.setElapsed(millies);
+        post(UiEvent.setElapsed(millies));
     }
 
     @Override
     public void setFreeze(int player, long millies) {
-        playersPanel.setFreeze(player, millies);
+        post(UiEvent.setFreeze(player, millies));
     }
 
     @Override
     public void setScore(int player, int score) {
-        playersPanel.setScore(player, score);
+        post(UiEvent.setScore(player, score));
+    }
+
+    @Override
+    public void apply(List<UiEvent> events) {
+        for (UiEvent event : events)
+            if (event.type == UiEvent.Type.PLACE_CARD)
+                cardImages.prefetch(event.card);
+        pending.addAll(events);
+        scheduleFrame();
     }
 
     @Override
     public void announceWinner(int[] players) {
-        playersPanel.setVisible(false);
-        winnerPanel.announceWinner(players);
-        winnerPanel.setVisible(true);
+        EventQueue.invokeLater(() -> {
+            drain();
+            playersPanel.setVisible(false);
+            winnerPanel.announceWinner(players);
+            winnerPanel.setVisible(true);
+        });
+    }
+
+    /**
+     * Queues an update to be applied on the event dispatch thread (the calling game thread does no ui work).
+     */
+    private void post(UiEvent event) {
+        pending.add(event);
+        scheduleFrame();
+    }
+
+    /**
+     * Makes sure a frame will drain the queue: at most one frame is pending, and frames are at least
+     * 1000 / MaxFps milliseconds apart, so the updates arriving in between are applied (and coalesced) together.
+     */
+    private void scheduleFrame() {
+        if (!frameScheduled.compareAndSet(false, true))
+            return;
+        long wait = frameMillis - (System.currentTimeMillis() - lastFrame);
+        if (wait <= 0) {
+            EventQueue.invokeLater(this::frame);
+        } else {
+            Timer timer = new Timer((int) wait, e -> frame());
+            timer.setRepeats(false);
+            timer.start();
+        }
+    }
+
+    private void frame() {
+        frameScheduled.set(false);
+        lastFrame = System.currentTimeMillis();
+        drain();
+    }
+
+    /**
+     * Applies all the queued updates in one pass (must be called on the event dispatch thread).
+     */
+    private void drain() {
+        List<UiEvent> events = new ArrayList<>();
+        for (UiEvent event = pending.poll(); event != null; event = pending.poll())
+            events.add(event);
+        if (events.isEmpty())
+            return;
+
+        for (UiEvent event : gamePanel.apply(UiBatch.coalesce(events))) {
+            switch (event.type) {
+                case COUNTDOWN:
+                    timerPanel.setCountdown(event.value, event.warn);
+                    break;
+                case ELAPSED:
+                    timerPanel.setElapsed(event.value);
+                    break;
+                case FREEZE:
+                    playersPanel.setFreeze(event.player, event.value);
+                    break;
+                case SCORE:
+                    playersPanel.setScore(event.player, (int) event.value);
+                    break;
+                default:
+                    break;
+            }
+        }
     }
 
     @Override
@@ -3,7 +3,7 @@ package bguspl.set;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.SplittableRandom;
 import java.util.stream.IntStream;
 
 /**
@@ -13,8 +13,20 @@ public class UtilImpl implements Util {
 
     private final Config config;
 
+    /**
+     * The random generators of the spins, one per thread, split from the configured seed's spin stream.
+     */
+    private final SplittableRandom spinRandoms;
+    private final ThreadLocal<SplittableRandom> spinRandom;
+
     public UtilImpl(Config config) {
         this.config = config;
+        spinRandoms = config.spinRandom();
+        spinRandom = ThreadLocal.withInitial(() -> {
+            synchronized (spinRandoms) {
+                return spinRandoms.split();
+            }
+        });
     }
 
     private void cardToFeatures(int card, int[] features) {
@@ -85,7 +97,7 @@ public class UtilImpl implements Util {
 
     public void spin() {
         if (config.randomSpinMax <= 0) return;
-        long cycles = ThreadLocalRandom.current().nextLong(config.randomSpinMin, config.randomSpinMax);
+        long cycles = spinRandom.get().nextLong(config.randomSpinMin, config.randomSpinMax);
         for (int i = 0; i < cycles; ++i)
             Thread.yield();
     }
@@ -0,0 +1,67 @@
+package bguspl.set;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Creates the game's worker threads, using virtual threads when they are requested and the runtime supports them.
+ * Note: the project is compiled for Java 11, so the virtual thread builder (Java 21+) is looked up reflectively.
+ */
+public final class VirtualThreads {
+
+    /**
+     * Handles to Thread.ofVirtual(), Thread.Builder.name(String) and Thread.Builder.unstarted(Runnable)
+     * (null if the runtime does not support virtual threads).
+     */
+    private static final MethodHandle ofVirtual;
+    private static final MethodHandle name;
+    private static final MethodHandle unstarted;
+
+    static {
+        MethodHandle ofVirtualHandle = null, nameHandle = null, unstartedHandle = null;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            ofVirtualHandle = lookup.findStatic(Thread.class, "ofVirtual",
+                    MethodType.methodType(Class.forName("java.lang.Thread$Builder$OfVirtual")));
+            nameHandle = lookup.findVirtual(builder, "name", MethodType.methodType(builder, String.class));
+            unstartedHandle = lookup.findVirtual(builder, "unstarted", MethodType.methodType(Thread.class, Runnable.class));
+        } catch (ReflectiveOperationException ignored) {
+            ofVirtualHandle = null;
+        }
+        ofVirtual = ofVirtualHandle;
+        name = nameHandle;
+        unstarted = unstartedHandle;
+    }
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return - true iff the current runtime can create virtual threads.
+     */
+    public static boolean isSupported() {
+        return ofVirtual != null;
+    }
+
+    /**
+     * Creates a new (unstarted) thread.
+     *
+     * @param task    - the runnable the thread executes.
+     * @param name    - the name of the thread.
+     * @param virtual - true iff a virtual thread should be created (ignored if the runtime does not support it).
+     * @return - the new thread.
+     */
+    public static Thread newThread(Runnable task, String name, boolean virtual) {
+        if (virtual && isSupported()) {
+            try {
+                Object builder = VirtualThreads.name.invoke(ofVirtual.invoke(), name);
+                return (Thread) unstarted.invoke(builder, task);
+            } catch (Throwable e) {
+                throw new IllegalStateException("cannot create virtual thread " + name, e);
+            }
+        }
+        return new Thread(task, name);
+    }
+}
@@ -0,0 +1,119 @@
+package bguspl.set.ex;
+
+import bguspl.set.Clock;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * This class is the base of the actor engine's entities.
+ * An actor owns a mailbox and processes its messages one at a time on a shared executor, so its state is only ever
+ * touched by one thread at a time.
+ *
+ * @param <M> - the type of messages the actor receives.
+ */
+abstract class Actor<M> implements Runnable {
+
+    /**
+     * The maximal number of messages processed before the actor yields its executor thread to other actors.
+     */
+    private static final int BATCH_SIZE = 32;
+
+    /**
+     * The executor the actor runs on.
+     */
+    private final Executor executor;
+
+    /**
+     * The executor used to deliver delayed messages.
+     */
+    private final Clock.Timers timers;
+
+    /**
+     * The incoming messages of this actor.
+     */
+    private final Queue<M> mailbox = new ConcurrentLinkedQueue<>();
+
+    /**
+     * True iff the actor is scheduled on (or running in) the executor.
+     */
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    /**
+     * Called with the exception when handling a message fails (the engine ends the game).
+     */
+    private final Consumer<Throwable> onFailure;
+
+    protected Actor(Executor executor, Clock.Timers timers, Consumer<Throwable> onFailure) {
+        this.executor = executor;
+        this.timers = timers;
+        this.onFailure = onFailure;
+    }
+
+    /**
+     * Sends a message to this actor.
+     *
+     * @param message - the message to send.
+     */
+    public void tell(M message) {
+        mailbox.add(message);
+        schedule();
+    }
+
+    /**
+     * Sends a message to this actor after a delay.
+     *
+     * @param message - the message to send.
+     * @param millis  - the delay in milliseconds.
+     */
+    public void tellLater(M message, long millis) {
+        try {
+            timers.schedule(() -> tell(message), millis);
+        } catch (RejectedExecutionException ignored) {
+            //the engine has shut down, the message is no longer relevant
+        }
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException ignored) {
+                //the engine has shut down, the message is no longer relevant
+            }
+        }
+    }
+
+    /**
+     * Processes a batch of messages (called by the executor only). A message that fails to be handled is reported to
+     * the engine, and the rest of the batch is left in the mailbox.
+     */
+    @Override
+    public final void run() {
+        M message;
+        try {
+            for (int i = 0; i < BATCH_SIZE && (message = mailbox.poll()) != null; i++)
+                receive(message);
+        } catch (RuntimeException | Error e) {
+            onFailure.accept(e);
+            return;
+        } finally {
+            scheduled.set(false);
+        }
+
+        //a message may have arrived after the last poll
+        if (!mailbox.isEmpty())
+            schedule();
+    }
+
+    /**
+     * Handles a single message.
+     *
+     * @param message - the message to handle.
+     */
+    protected abstract void receive(M message);
+}
@@ -0,0 +1,122 @@
+package bguspl.set.ex;
+
+import bguspl.set.Clock;
+import bguspl.set.Env;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * This class runs a game with the actor engine: the dealer and every player are actors scheduled on a small fixed
+ * pool of threads, so the number of threads does not depend on the number of players.
+ */
+public class ActorEngine implements Runnable {
+
+    /**
+     * The game environment object.
+     */
+    private final Env env;
+
+    /**
+     * Game entities.
+     */
+    private final Table table;
+    private final Dealer dealer;
+    private final Player[] players;
+
+    /**
+     * Released when the game is over.
+     */
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    /**
+     * The first exception an actor failed with (null if none), rethrown by run.
+     */
+    private volatile Throwable failure;
+
+    private volatile DealerActor dealerActor;
+
+    /**
+     * True iff game should be terminated due to an external event.
+     */
+    private volatile boolean terminate;
+
+    /**
+     * @param env     - the environment object.
+     * @param table   - the table object.
+     * @param dealer  - the dealer object (used for announcing the winners).
+     * @param players - the players in the game.
+     */
+    public ActorEngine(Env env, Table table, Dealer dealer, Player[] players) {
+        this.env = env;
+        this.table = table;
+        this.dealer = dealer;
+        this.players = players;
+    }
+
+    /**
+     * Runs the game until it is over (or terminated).
+     *
+     * @throws IllegalStateException - if an actor failed to handle a message (the game is ended).
+     */
+    @Override
+    public void run() {
+        int threads = env.config.actorThreads > 0 ? env.config.actorThreads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, task -> new Thread(task, "actor-" + counter.incrementAndGet()));
+        Executor executor = env.clock.track(pool, threads);
+        Clock.Timers timers = env.clock.newTimers("actor-timers");
+
+        try {
+            DealerActor dealerActor = new DealerActor(env, table, dealer, finished::countDown, this::failed, executor,
+                    timers);
+            PlayerActor[] actors = new PlayerActor[players.length];
+            for (int i = 0; i < players.length; i++) {
+                actors[i] = new PlayerActor(env, table, players[i], dealerActor, this::failed, executor, timers);
+                players[i].setActor(actors[i]);
+            }
+            dealerActor.setPlayers(actors);
+            this.dealerActor = dealerActor;
+
+            dealerActor.tell(DealerActor.START);
+            if (terminate)
+                dealerActor.tell(DealerActor.TERMINATE);
+            finished.await();
+        } catch (InterruptedException ignored) {
+        } finally {
+            timers.shutdown();
+            pool.shutdown();
+            try {
+                pool.awaitTermination(env.config.endGamePauseMillies + 1000, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ignored) {
+            }
+        }
+        if (failure != null)
+            throw new IllegalStateException("an actor of the game failed", failure);
+    }
+
+    /**
+     * Ends the game after an actor failed to handle a message.
+     */
+    private void failed(Throwable e) {
+        env.logger.log(Level.SEVERE, "actor " + Thread.currentThread().getName() + " failed", e);
+        if (failure == null)
+            failure = e;
+        finished.countDown();
+    }
+
+    /**
+     * Called when the game should be terminated due to an external event.
+     */
+    public void terminate() {
+        terminate = true;
+        DealerActor dealerActor = this.dealerActor;
+        if (dealerActor != null)
+            dealerActor.tell(DealerActor.TERMINATE);
+    }
+}
@@ -14,6 +14,11 @@ public class Check {
      */
     private final Player player;
 
+    /**
+     * the time the check was queued for the dealer (System.nanoTime), 0 if it was not queued
+     */
+    private volatile long submitted;
+
     public Check(int[] cardsToCheck, Player player) {
         this.cardsToCheck = cardsToCheck;
         this.player = player;
@@ -26,4 +31,12 @@ public class Check {
     public Player getPlayer() {
         return player;
     }
+
+    public long getSubmitted() {
+        return submitted;
+    }
+
+    public void setSubmitted(long submitted) {
+        this.submitted = submitted;
+    }
 }
@@ -0,0 +1,40 @@
+package bguspl.set.ex;
+
+/**
+ * this class represents a replacement deal prepared ahead of time for one of the sets on the table
+ */
+class DealPlan {
+
+    /**
+     * the slots freed by collecting the set, in ascending order (the order of the deal is drawn when it is applied)
+     */
+    private final int[] slots;
+
+    /**
+     * the cards that will be dealt (the top of the deck when the plan was made)
+     */
+    private final int[] cards;
+
+    /**
+     * true iff the table after the deal holds a legal set
+     */
+    private final boolean hasSet;
+
+    public DealPlan(int[] slots, int[] cards, boolean hasSet) {
+        this.slots = slots;
+        this.cards = cards;
+        this.hasSet = hasSet;
+    }
+
+    public int[] getSlots() {
+        return slots;
+    }
+
+    public int[] getCards() {
+        return cards;
+    }
+
+    public boolean hasSet() {
+        return hasSet;
+    }
+}
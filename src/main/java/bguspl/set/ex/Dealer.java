@@ -1,13 +1,19 @@
 package bguspl.set.ex;
 
+import bguspl.set.Config;
 import bguspl.set.Env;
+import bguspl.set.FlightRecorder;
+import bguspl.set.ProfiledLock;
+import bguspl.set.ThreadLogger;
+import bguspl.set.VirtualThreads;
 
 import java.util.*;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 /**
  * This class manages the dealer's threads and data
@@ -27,9 +33,9 @@ public class Dealer implements Runnable {
     private final Thread[] playerThreads;
 
     /**
-     * The list of card ids that are left in the dealer's deck.
+     * The dealer's deck and the rules of dealing it.
      */
-    private final List<Integer> deck;
+    private final Deck deck;
 
     /**
      * The list of sets the dealer needs to check.
@@ -58,6 +64,21 @@ public class Dealer implements Runnable {
      */
     private volatile boolean blockAllOthers = false;
 
+    /**
+     * The possible results of a claim in the optimistic engine.
+     */
+    public static final int CLAIM_POINT = 0, CLAIM_PENALTY = 1, CLAIM_CONFLICT = 2;
+
+    /**
+     * True iff the optimistic engine is used (players verify their own sets and the dealer only refills the table).
+     */
+    final boolean optimistic;
+
+    /**
+     * True iff cards were collected and the table should be refilled (optimistic engine only).
+     */
+    private volatile boolean refillPending = false;
+
     /**
      * the time remaining in game
      */
@@ -71,6 +92,22 @@ public class Dealer implements Runnable {
      * a Read-Write lock that locks anyone that changes the state of the cards
      */
     ReadWriteLock removeCardsLock;
+
+    /**
+     * The dealer's lock, and the condition the dealer thread waits on between timer updates (signalled when there is
+     * something for it to do). The players also wait on it for their ai threads to start and stop.
+     */
+    final ReentrantLock lock = new ReentrantLock();
+    final Condition woken;
+
+    /**
+     * The locks as taken by the dealer's operations: removeCardsLock, the dealer's lock and the slot locks.
+     */
+    private final ProfiledLock reshuffleLock, givePointLock, refillLock, partialRedealLock, claimCheckLock,
+            claimCommitLock;
+    private final ProfiledLock wakePlayersLock, timerLock, sendLock, terminateLock, refillRequestLock;
+    private final ProfiledLock[] returnCardLocks;
+
     /**
      * default dealer constructor
      *
@@ -82,7 +119,7 @@ public class Dealer implements Runnable {
         this.env = env;
         this.table = table;
         this.players = players;
-        deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
+        deck = new Deck(env, table);
         checks = new CopyOnWriteArrayList<>();
         playersWaitingToBeChecked = new CopyOnWriteArrayList<>();
         playerThreads = new Thread[players.length];
@@ -93,6 +130,20 @@ public class Dealer implements Runnable {
             time = Long.MAX_VALUE;
         }
         removeCardsLock = new ReentrantReadWriteLock();
+        reshuffleLock = env.locks.lock(removeCardsLock.writeLock(), "removeCardsLock", "reshuffle");
+        givePointLock = env.locks.lock(removeCardsLock.writeLock(), "removeCardsLock", "givePoint");
+        refillLock = env.locks.lock(removeCardsLock.writeLock(), "removeCardsLock", "refillTable");
+        partialRedealLock = env.locks.lock(removeCardsLock.writeLock(), "removeCardsLock", "partialRedeal");
+        claimCheckLock = env.locks.lock(removeCardsLock.readLock(), "removeCardsLock", "claimCheck");
+        claimCommitLock = env.locks.lock(removeCardsLock.writeLock(), "removeCardsLock", "claimCommit");
+        wakePlayersLock = env.locks.lock(lock, "dealer", "wakePlayers");
+        timerLock = env.locks.lock(lock, "dealer", "timer");
+        sendLock = env.locks.lock(lock, "dealer", "send");
+        terminateLock = env.locks.lock(lock, "dealer", "terminate");
+        refillRequestLock = env.locks.lock(lock, "dealer", "refillRequest");
+        woken = timerLock.newCondition();
+        returnCardLocks = table.slotLocks("returnCard");
+        optimistic = env.config.engine == Config.Engine.OPTIMISTIC;
     }
 
     /**
@@ -102,10 +153,14 @@ public class Dealer implements Runnable {
     public void run() {
 
         synchronized (startLock) {
-            System.out.printf("Info: Thread %s starting.%n", Thread.currentThread().getName());
+            ThreadLogger.logStart(env.logger, Thread.currentThread().getName());
 
             //placing all cards on table
+            long dealStart = System.nanoTime();
+            GameEvents.Reshuffle deal = GameEvents.beginReshuffle();
             placeCardsOnTable();
+            GameEvents.commit(deal, deck.size());
+            env.metrics.reshuffled(System.nanoTime() - dealStart);
 
             updateTimerDisplay(true);
 
@@ -114,6 +169,7 @@ public class Dealer implements Runnable {
         }
 
         boolean afterFirst = false;
+        GameEvents.Round round = GameEvents.beginRound();
         while (!shouldFinish()) {
             if (afterFirst) {
                 updateTimerDisplay(true);
@@ -132,16 +188,26 @@ public class Dealer implements Runnable {
             }
             timerLoop();
             blockAllOthers = true;
+            GameEvents.commit(round, deck.size());
 
-            removeCardsLock.writeLock().lock();
+            long reshuffleStart = System.nanoTime();
+            GameEvents.Reshuffle reshuffle = GameEvents.beginReshuffle();
+            reshuffleLock.lock();
+            table.beginUiBatch();
             try {
                 removeAllCardsFromTable();
                 placeCardsOnTable();
             } finally {
-                removeCardsLock.writeLock().unlock();
+                table.flushUiBatch();
+                reshuffleLock.unlock();
             }
+            GameEvents.commit(reshuffle, deck.size());
+            env.metrics.reshuffled(System.nanoTime() - reshuffleStart);
+            round = GameEvents.beginRound();
         }
 
+        GameEvents.commit(round, deck.size());
+
         //if shouldFinish returns true but terminate is false, we call it ourselves
         if (!terminate) {
             terminate();
@@ -150,7 +216,7 @@ public class Dealer implements Runnable {
         //when game is over, announce the winners
         synchronized (endLock) {
             announceWinners();
-            System.out.printf("Info: Thread %s terminated.%n", Thread.currentThread().getName());
+            ThreadLogger.logStop(env.logger, Thread.currentThread().getName());
         }
     }
 
@@ -159,7 +225,7 @@ public class Dealer implements Runnable {
      */
     private void startPlayerThreads() {
         for (int i = 0; i < players.length; i++) {
-            playerThreads[i] = new Thread(players[i]);
+            playerThreads[i] = VirtualThreads.newThread(players[i], "player-" + players[i].id, env.config.virtualThreads);
             players[i].setPlayerThread(playerThreads[i]);
             playerThreads[i].start();
         }
@@ -170,14 +236,17 @@ public class Dealer implements Runnable {
      */
     private void timerLoop() {
         while (!terminate && (time > 0 || env.config.turnTimeoutMillis <= 0)) {
-            //if there is no timer nor sets on the table break out of the loop
-            if (env.config.turnTimeoutMillis <= 0 && thereAreNoSetsOnTable()) {
+            //if there is no timer nor sets on the table, try replacing a few cards, otherwise break out of the loop
+            if (env.config.turnTimeoutMillis <= 0 && thereAreNoSetsOnTable() && !partialRedeal()) {
                 break;
             }
 
 
             //sleep until a player sends a check and wakes you up
             sleepUntilWokenOrTimeout();
+            if (refillPending) {
+                refillTable();
+            }
             while (!checks.isEmpty() && (time > 0 || env.config.turnTimeoutMillis <= 0)) {
 
                 //if there is no timer nor sets on the table break out of the loop
@@ -185,39 +254,56 @@ public class Dealer implements Runnable {
                     break;
                 }
 
-                if (Math.abs(env.config.turnTimeoutMillis - (System.currentTimeMillis() - timeZero) - lastTime) > 10){
+                if (Math.abs(env.config.turnTimeoutMillis - (env.clock.millis() - timeZero) - lastTime) > 10){
                     if (env.config.turnTimeoutMillis > 0) {
-                        time = env.config.turnTimeoutMillis - (System.currentTimeMillis() - timeZero);
+                        time = env.config.turnTimeoutMillis - (env.clock.millis() - timeZero);
                         env.ui.setCountdown(time + 999, false);
                         lastTime = time;
                     } else if (env.config.turnTimeoutMillis == 0){
                         env.ui.setElapsed(time);
-                        time = ((System.currentTimeMillis() - timeZero));
+                        time = ((env.clock.millis() - timeZero));
                         lastTime = time;
                     }
                 }
 
-                //get the player who sent the first check in the list
-                Player currPlayer = checks.get(0).getPlayer();
-
-                //check if the check is legal, and act accordingly
-                if (env.util.testSet(checks.get(0).getCardsToCheck()) ||
-                        ((!deck.isEmpty() || table.findEmptySlots().length != env.config.tableSize) && env.config.featureSize == 1)) {
-                    removeCardsLock.writeLock().lock();
-                    try {
-                        givePoint(currPlayer);
-                    } finally {
-                        removeCardsLock.writeLock().unlock();
-                    }
+                judgeCheck();
+            }
+        }
+    }
 
-                    //after replacing cards in point, print a new hint
-                    if (env.config.hints) {
-                        table.hints();
-                    }
-                } else {
-                    givePenalty(currPlayer);
-                }
+    /**
+     * Judge the first check in the list: give its player a point (replacing the set's cards) or a penalty.
+     * Package-private for the benchmarks, which drive the dealer without its thread.
+     *
+     * @pre !checks.isEmpty()
+     */
+    void judgeCheck() {
+        //get the player who sent the first check in the list
+        Player currPlayer = checks.get(0).getPlayer();
+        int[] cards = checks.get(0).getCardsToCheck();
+
+        //check if the check is legal, and act accordingly
+        if (env.util.testSet(cards) ||
+                ((!deck.isEmpty() || table.findEmptySlots().length != env.config.tableSize) && env.config.featureSize == 1)) {
+            GameEvents.GivePoint event = GameEvents.beginGivePoint();
+            givePointLock.lock();
+            table.beginUiBatch();
+            try {
+                givePoint(currPlayer);
+            } finally {
+                table.flushUiBatch();
+                givePointLock.unlock();
+            }
+            GameEvents.commit(event, currPlayer.id, cards);
+            GameEvents.checkVerdict(currPlayer.id, cards, "point");
+
+            //after replacing cards in point, print a new hint
+            if (env.config.hints) {
+                table.hints();
             }
+        } else {
+            givePenalty(currPlayer);
+            GameEvents.checkVerdict(currPlayer.id, cards, "penalty");
         }
     }
 
@@ -227,28 +313,56 @@ public class Dealer implements Runnable {
      * @param currPlayer the player to give a point to
      */
     private void givePoint(Player currPlayer) {
+        DealPlan plan = deck.findDealPlan(checks.get(0).getCardsToCheck());
 
         //remove and place the cards of the set, while blocking all other players.
         blockAllOthers = true;
         removeCardsFromTable();
-        placeCardsOnTable();
+        if (plan != null) {
+            deck.applyDealPlan(plan);
+        } else {
+            placeCardsOnTable();
+        }
         blockAllOthers = false;
 
         //telling currPlayer that he deserves a point and that we have checked his set
+        env.recorder.record(FlightRecorder.CHECK_JUDGED, currPlayer.id, -1, FlightRecorder.VERDICT_POINT);
         currPlayer.setPoint(true);
         currPlayer.setChecked(true);
 
         //wake up all players that aren't waiting to be checked
-        synchronized (this) {
+        wakePlayersLock.lock();
+        try {
             for (Player player : players) {
                 if (!playersWaitingToBeChecked.contains(player)) {
-                    synchronized (player.getPlayerThread()) {
-                        player.getPlayerThread().notify();
-                    }
+                    player.wakeUp();
                 }
             }
             //reset timer
             updateTimerDisplay(true);
+        } finally {
+            wakePlayersLock.unlock();
+        }
+    }
+
+    /**
+     * Refill the slots emptied by players' claims (optimistic engine only; package-private for the benchmarks).
+     */
+    void refillTable() {
+        refillPending = false;
+        refillLock.lock();
+        table.beginUiBatch();
+        try {
+            placeCardsOnTable();
+        } finally {
+            table.flushUiBatch();
+            refillLock.unlock();
+        }
+        updateTimerDisplay(true);
+
+        //after replacing cards, print a new hint
+        if (env.config.hints) {
+            table.hints();
         }
     }
 
@@ -260,6 +374,7 @@ public class Dealer implements Runnable {
     private void givePenalty(Player currPlayer) {
 
         //tell player that he does not deserve a point BUT he has been checked
+        env.recorder.record(FlightRecorder.CHECK_JUDGED, currPlayer.id, -1, FlightRecorder.VERDICT_PENALTY);
         currPlayer.setPoint(false);
         currPlayer.setChecked(true);
 
@@ -268,9 +383,7 @@ public class Dealer implements Runnable {
         playersWaitingToBeChecked.remove(0);
 
         //waking currPlayer up
-        synchronized (currPlayer.getPlayerThread()) {
-            currPlayer.getPlayerThread().notify();
-        }
+        currPlayer.wakeUp();
     }
 
     /**
@@ -291,8 +404,11 @@ public class Dealer implements Runnable {
                 } catch (InterruptedException ignored) {
                 }
             }
-            synchronized (this) {
-                notify();
+            terminateLock.lock();
+            try {
+                woken.signal();
+            } finally {
+                terminateLock.unlock();
             }
         }
     }
@@ -303,11 +419,7 @@ public class Dealer implements Runnable {
      * @return true iff the game should be finished.
      */
     private boolean shouldFinish() {
-        if (env.config.featureSize != 1) {
-            return terminate || env.util.findSets(deck, 1).isEmpty();
-        } else {
-            return terminate || deck.isEmpty() && table.findEmptySlots().length == env.config.tableSize;
-        }
+        return terminate || deck.noSetsLeft();
     }
 
     /**
@@ -324,8 +436,11 @@ public class Dealer implements Runnable {
         int[] cards = check.getCardsToCheck();
         Player currPlayer = check.getPlayer();
 
-        //for each card in the set, we remove all tokens on it and remove it from the table
-        for (int card : cards) {
+        //for each card in the set, we remove all tokens on it
+        int[] slots = new int[cards.length];
+        for (int i = 0; i < cards.length; i++) {
+            int card = cards[i];
+            slots[i] = table.cardToSlot[card];
             Integer[] playersId = table.getSlots()[table.cardToSlot[card]].getTokens();
 
             //remove all the tokens from this card
@@ -340,32 +455,70 @@ public class Dealer implements Runnable {
                     findPlayer(integer).removeToken(table.cardToSlot[card]);
                 }
             }
-            synchronized (table.slots[table.cardToSlot[card]]) {
-                table.removeCard(table.cardToSlot[card]);
-            }
         }
+
+        //remove the cards of the set from the table
+        table.removeCards(slots);
     }
 
     /**
      * Check if any cards can be removed from the deck and placed on the table.
      */
     private void placeCardsOnTable() {
-        int[] empty = table.findEmptySlots();
-
-        //call shuffle on 'empty'
-        empty = shuffle(empty);
+        deck.deal(table.findEmptySlots(), this::returnCardToDeck);
+    }
 
-        //if the table is empty, shuffle the deck
-        if (empty.length == env.config.tableSize) {
-            shuffleDeck();
+    /**
+     * Prepare a replacement deal for each set on the table, so that collecting a set only needs to apply it.
+     */
+    private void prepareDealPlans() {
+        if (!optimistic) {
+            deck.prepareDealPlans();
         }
+    }
 
-        //place a card in each empty slot (the order is completely random)
-        for (int slot : empty) {
-            if (!deck.isEmpty()) {
-                table.placeCard(deck.remove(deck.size() - 1), slot);
+    /**
+     * Remove a card going back to the deck from the table, discarding any tokens and checks that depend on it.
+     *
+     * @param slot - the slot of the card.
+     */
+    private void returnCardToDeck(int slot) {
+        for (Integer id : table.getSlots()[slot].getTokens()) {
+            if (id != null) {
+                removeCheck(id);
+                findPlayer(id).removeToken(slot);
             }
         }
+        table.removeTokens(slot);
+        returnCardLocks[slot].lock();
+        try {
+            table.removeCard(slot);
+        } finally {
+            returnCardLocks[slot].unlock();
+        }
+    }
+
+    /**
+     * Replace as few cards as possible so that the table holds a set again (used instead of a full reshuffle).
+     *
+     * @return true iff the table holds a set now.
+     */
+    private boolean partialRedeal() {
+        if (!deck.guaranteesSets()) {
+            return false;
+        }
+        blockAllOthers = true;
+        partialRedealLock.lock();
+        table.beginUiBatch();
+        try {
+            placeCardsOnTable();
+        } finally {
+            table.flushUiBatch();
+            partialRedealLock.unlock();
+        }
+        blockAllOthers = false;
+        wakeUpAllPlayers();
+        return !thereAreNoSetsOnTable();
     }
 
     /**
@@ -386,10 +539,14 @@ public class Dealer implements Runnable {
      * Sleep for a fixed amount of time or until the thread is awakened for some purpose.
      */
     private void sleepUntilWokenOrTimeout() {
-        if (checks.isEmpty() && (time > 0 || env.config.turnTimeoutMillis == 0)
+        if (checks.isEmpty() && !refillPending && (time > 0 || env.config.turnTimeoutMillis == 0)
                 && (!deck.isEmpty() || table.findEmptySlots().length != env.config.tableSize || env.config.turnTimeoutMillis > 0) && !terminate) {
-            synchronized (this) {
+            prepareDealPlans();
+            timerLock.lock();
+            try {
                 updateTimerDisplay(false);
+            } finally {
+                timerLock.unlock();
             }
         }
     }
@@ -399,7 +556,7 @@ public class Dealer implements Runnable {
      */
     private void updateTimerDisplay(boolean reset) {
         if (reset) {
-            timeZero = System.currentTimeMillis();
+            timeZero = env.clock.millis();
             if (env.config.turnTimeoutMillis > 0) {
                 time = reshuffleTime;
                 lastTime = time;
@@ -420,23 +577,19 @@ public class Dealer implements Runnable {
         //if the time is more than 6 seconds, we increment it by 1000 millis and display it without warning.
         //else if the time is less than 6 seconds, we increment it by 10 millis (more or less) and display it with warning.
         if (time > env.config.turnTimeoutWarningMillis && time <= reshuffleTime) {
-            time = env.config.turnTimeoutMillis - (System.currentTimeMillis() - timeZero);
+            time = env.config.turnTimeoutMillis - (env.clock.millis() - timeZero);
             env.ui.setCountdown(time + 999, false);
-            synchronized (this) {
-                try {
-                    wait(1000 + ((time - lastTime)%1000));
-                } catch (InterruptedException ignored) {
-                }
+            try {
+                woken.await(1000 + ((time - lastTime)%1000), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ignored) {
             }
             lastTime = time;
         } else if (time <= env.config.turnTimeoutWarningMillis && time >= 0) {
             env.ui.setCountdown(time, true);
-            time = env.config.turnTimeoutMillis - ((System.currentTimeMillis() - timeZero));
-            synchronized (this) {
-                try {
-                    wait(8 + (int)(((time - lastTime)%10) * 0.8));
-                } catch (InterruptedException ignored) {
-                }
+            time = env.config.turnTimeoutMillis - ((env.clock.millis() - timeZero));
+            try {
+                woken.await(8 + (int)(((time - lastTime)%10) * 0.8), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ignored) {
             }
             if (time <= 0){
                 env.ui.setCountdown(0, true);
@@ -446,13 +599,11 @@ public class Dealer implements Runnable {
     }
 
     private void timer2() { //TODO: needs checking
-        time = ((System.currentTimeMillis() - timeZero));
+        time = ((env.clock.millis() - timeZero));
         env.ui.setElapsed(time);
-        synchronized (this) {
-            try {
-                wait(1000 + ((time - lastTime)%1000));
-            } catch (InterruptedException ignored) {
-            }
+        try {
+            woken.await(1000 + ((time - lastTime)%1000), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ignored) {
         }
         lastTime = time;
     }
@@ -465,21 +616,8 @@ public class Dealer implements Runnable {
         if (table.findEmptySlots().length == 0) {
             checks.clear();
             playersWaitingToBeChecked.clear();
-            //this array is here to randomize the order of removal
-            int[] slots = new int[env.config.tableSize];
-            for (int i = 0; i < env.config.tableSize; i++) {
-                slots[i] = i;
-            }
-            slots = shuffle(slots);
-
-            //remove all tokens in the ui
-            env.ui.removeTokens();
-
-            //remove all cards from the table and add them to the bottom of the deck
-            for (int i = 0; i < env.config.tableSize; i++) {
-                deck.add(table.getSlotToCard()[slots[i]]);
-                table.removeCard(slots[i]);
-            }
+            //remove all cards and tokens from the table and add them to the bottom of the deck (in random order)
+            deck.returnCards(table.clearTable());
 
             //for each player, remove his tokens
             for (Player player : players) {
@@ -528,27 +666,14 @@ public class Dealer implements Runnable {
      * @return a randomly shuffled array
      */
     public int[] shuffle(int[] toShuffle) {
-        Random rd = new Random();
-        for (int i = toShuffle.length - 1; i > 0; i--) {
-            int j = rd.nextInt(i + 1);
-            int temp = toShuffle[i];
-            toShuffle[i] = toShuffle[j];
-            toShuffle[j] = temp;
-        }
-        return toShuffle;
+        return deck.shuffle(toShuffle);
     }
 
     /**
      * this method shuffles the 'deck' list in a random order
      */
     public void shuffleDeck() {
-        Random rd = new Random();
-        for (int i = deck.size() - 1; i > 0; i--) {
-            int j = rd.nextInt(i + 1);
-            int temp = deck.get(i);
-            deck.set(i, deck.get(j));
-            deck.set(j, temp);
-        }
+        deck.shuffle();
     }
 
     /**
@@ -562,15 +687,111 @@ public class Dealer implements Runnable {
 
             //if time is not over, add the check to the checks list
             if (time > 0 || env.config.turnTimeoutMillis <= 0) {
+                env.recorder.record(FlightRecorder.CHECK_SUBMITTED, check.getPlayer().id, -1, 0);
+                check.setSubmitted(System.nanoTime());
                 synchronized (playersWaitingToBeChecked) {
                     playersWaitingToBeChecked.add(check.getPlayer());
                     checks.add(check);
+                    env.metrics.checkQueued(checks.size());
+                    GameEvents.checkEnqueued(check.getPlayer().id, check.getCardsToCheck(), checks.size());
+                }
+            }
+            sendLock.lock();
+            try {
+                woken.signal();
+            } finally {
+                sendLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Claims a set in the optimistic engine. Runs on the claiming player's thread: the player atomically claims the
+     * slots, the set is tested without holding any lock, and the cards are removed (commit) or the slots are released
+     * (rollback). The dealer only refills the emptied slots.
+     *
+     * @param player - the claiming player.
+     * @param slots  - the slots of the claimed set.
+     * @param cards  - the cards the player saw in these slots.
+     * @return CLAIM_POINT, CLAIM_PENALTY or CLAIM_CONFLICT (another player or the dealer got to the cards first).
+     */
+    public int claim(Player player, int[] slots, int[] cards) {
+        env.recorder.record(FlightRecorder.CHECK_SUBMITTED, player.id, -1, 0);
+        long submitted = System.nanoTime();
+        int result = tryClaim(player, slots, cards);
+        if (result != CLAIM_CONFLICT) {
+            env.metrics.checkAnswered(System.nanoTime() - submitted);
+        }
+        env.recorder.record(FlightRecorder.CHECK_JUDGED, player.id, -1, result == CLAIM_POINT ? FlightRecorder.VERDICT_POINT
+                : result == CLAIM_PENALTY ? FlightRecorder.VERDICT_PENALTY : FlightRecorder.VERDICT_STALE);
+        GameEvents.checkVerdict(player.id, cards, result == CLAIM_POINT ? "point" : result == CLAIM_PENALTY ? "penalty" : "stale");
+        return result;
+    }
+
+    private int tryClaim(Player player, int[] slots, int[] cards) {
+        if ((time <= 0 && env.config.turnTimeoutMillis > 0) || !table.claimSlots(player.id, slots)) {
+            return CLAIM_CONFLICT;
+        }
+        try {
+            //the claim is only judged if the player saw the current cards
+            claimCheckLock.lock();
+            try {
+                if (!cardsAreOnSlots(cards, slots)) {
+                    return CLAIM_CONFLICT;
                 }
+            } finally {
+                claimCheckLock.unlock();
             }
-            synchronized (this) {
-                notify();
+
+            if (!env.util.testSet(cards) && env.config.featureSize != 1) {
+                return CLAIM_PENALTY;
+            }
+
+            //commit: remove the cards (the table may have been reshuffled in the meantime)
+            GameEvents.GivePoint event = GameEvents.beginGivePoint();
+            claimCommitLock.lock();
+            table.beginUiBatch();
+            try {
+                if (!cardsAreOnSlots(cards, slots)) {
+                    return CLAIM_CONFLICT;
+                }
+                for (int slot : slots) {
+                    Integer[] playersId = table.getSlots()[slot].getTokens();
+                    table.removeTokens(slot);
+                    for (Integer integer : playersId) {
+                        if (integer != null && integer != player.id) {
+                            findPlayer(integer).removeToken(slot);
+                        }
+                    }
+                }
+                table.removeCards(slots);
+            } finally {
+                table.flushUiBatch();
+                claimCommitLock.unlock();
+            }
+            GameEvents.commit(event, player.id, cards);
+        } finally {
+            table.releaseSlots(player.id, slots);
+        }
+
+        //ask the dealer to refill the table
+        refillRequestLock.lock();
+        try {
+            refillPending = true;
+            woken.signal();
+        } finally {
+            refillRequestLock.unlock();
+        }
+        return CLAIM_POINT;
+    }
+
+    private boolean cardsAreOnSlots(int[] cards, int[] slots) {
+        for (int i = 0; i < slots.length; i++) {
+            if (!Integer.valueOf(cards[i]).equals(table.slotToCard[slots[i]])) {
+                return false;
             }
         }
+        return true;
     }
 
     /**
@@ -596,9 +817,7 @@ public class Dealer implements Runnable {
      */
     private void wakeUpAllPlayers() {
         for (Player player : players) {
-            synchronized (player.getPlayerThread()) {
-                player.getPlayerThread().notify();
-            }
+            player.wakeUp();
         }
     }
 
@@ -610,22 +829,21 @@ public class Dealer implements Runnable {
         return players;
     }
 
-    private LinkedList<Integer> arrayToList(Integer[] arr) {
-        LinkedList<Integer> ans = new LinkedList<>();
-        for (Integer integer : arr) {
-            if (integer != null) {
-                int n = integer;
-                ans.add(n);
-            }
-        }
-        return ans;
+    /**
+     * @return the cards left in the deck (the dealer thread's own list, for the benchmarks that recycle cards).
+     */
+    List<Integer> getDeck() {
+        return deck.cards();
     }
 
-    private boolean thereAreNoSetsOnTable(){
-        boolean noNormalSets = env.util.findSets(arrayToList(table.slotToCard), 1).isEmpty();
-        boolean oneFeatureSet = ((!deck.isEmpty() || table.findEmptySlots().length != env.config.tableSize) && env.config.featureSize == 1);
-        return noNormalSets && !oneFeatureSet;
+    /**
+     * @return the deck and the rules of dealing it (used by the actor engine's dealer instead of the dealer thread).
+     */
+    Deck deck() {
+        return deck;
     }
 
-
+    private boolean thereAreNoSetsOnTable() {
+        return deck.noSetsOnTable();
+    }
 }
@@ -0,0 +1,293 @@
+package bguspl.set.ex;
+
+import bguspl.set.Clock;
+import bguspl.set.Env;
+import bguspl.set.FlightRecorder;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * This class manages the dealer's data in the actor engine.
+ * The dealer owns the deck and is the only one changing the cards on the table; players learn about changes through
+ * TableChanged messages and submit their sets as Claim messages. The rules of dealing are the Deck's, shared with the
+ * dealer of the threaded engines (deal plans are prepared whenever no claim is pending).
+ */
+class DealerActor extends Actor<DealerActor.Message> {
+
+    /**
+     * The messages the dealer actor handles.
+     */
+    static abstract class Message {
+    }
+
+    /**
+     * A player claims the cards in the given slots form a set.
+     */
+    static final class Claim extends Message {
+        final PlayerActor player;
+        final int[] slots;
+        final int[] cards;
+
+        Claim(PlayerActor player, int[] slots, int[] cards) {
+            this.player = player;
+            this.slots = slots;
+            this.cards = cards;
+        }
+    }
+
+    /**
+     * Deal the cards and start the game.
+     */
+    static final Message START = new Message() {
+    };
+
+    /**
+     * Update the timer display (and reshuffle on timeout).
+     */
+    static final Message TICK = new Message() {
+    };
+
+    /**
+     * The game should be terminated due to an external event.
+     */
+    static final Message TERMINATE = new Message() {
+    };
+
+    /**
+     * The game environment object.
+     */
+    private final Env env;
+
+    /**
+     * Game entities.
+     */
+    private final Table table;
+    private final Dealer dealer;
+    private PlayerActor[] players;
+
+    /**
+     * The dealer's deck and the rules of dealing it (the deck of the Dealer object).
+     */
+    private final Deck deck;
+
+    /**
+     * Called once the game is over and the winners were announced.
+     */
+    private final Runnable onFinish;
+
+    /**
+     * The time of the last reshuffle or collected set.
+     */
+    private long timeZero;
+
+    private boolean finished;
+
+    /**
+     * The flight recorder event of the current round (null if not recorded).
+     */
+    private GameEvents.Round round;
+
+    /**
+     * The number of claims sent to the dealer and not handled yet.
+     */
+    private final AtomicInteger pendingClaims = new AtomicInteger();
+
+    DealerActor(Env env, Table table, Dealer dealer, Runnable onFinish, Consumer<Throwable> onFailure, Executor executor,
+                Clock.Timers timers) {
+        super(executor, timers, onFailure);
+        this.env = env;
+        this.table = table;
+        this.dealer = dealer;
+        this.onFinish = onFinish;
+        deck = dealer.deck();
+    }
+
+    void setPlayers(PlayerActor[] players) {
+        this.players = players;
+    }
+
+    /**
+     * Sends a player's claim to the dealer.
+     */
+    void submit(Claim claim) {
+        int depth = pendingClaims.incrementAndGet();
+        env.metrics.checkQueued(depth);
+        GameEvents.checkEnqueued(claim.player.id(), claim.cards, depth);
+        tell(claim);
+    }
+
+    @Override
+    protected void receive(Message message) {
+        if (finished)
+            return;
+
+        if (message == START) {
+            reshuffle();
+            if (env.config.turnTimeoutMillis >= 0)
+                tell(TICK);
+        } else if (message instanceof Claim) {
+            claim((Claim) message);
+        } else if (message == TICK) {
+            tick();
+        } else if (message == TERMINATE) {
+            finish();
+        }
+
+        //the dealer is idle until the next claim arrives
+        if (!finished && pendingClaims.get() == 0)
+            deck.prepareDealPlans();
+    }
+
+    /**
+     * Checks a player's claim and answers with a verdict.
+     */
+    private void claim(Claim claim) {
+        pendingClaims.decrementAndGet();
+        env.recorder.record(FlightRecorder.CHECK_SUBMITTED, claim.player.id(), -1, 0);
+        for (int i = 0; i < claim.slots.length; i++) {
+            if (!Integer.valueOf(claim.cards[i]).equals(table.slotToCard[claim.slots[i]])) {
+                //the table has changed since the player placed its tokens
+                env.recorder.record(FlightRecorder.CHECK_JUDGED, claim.player.id(), -1, FlightRecorder.VERDICT_STALE);
+                GameEvents.checkVerdict(claim.player.id(), claim.cards, "stale");
+                claim.player.tell(new PlayerActor.Verdict(PlayerActor.Verdict.STALE));
+                return;
+            }
+        }
+
+        if (env.util.testSet(claim.cards) || env.config.featureSize == 1) {
+            GameEvents.GivePoint event = GameEvents.beginGivePoint();
+            DealPlan plan = deck.findDealPlan(claim.cards);
+            table.beginUiBatch();
+            for (int slot : claim.slots)
+                table.removeTokens(slot);
+            table.removeCards(claim.slots);
+            if (plan != null)
+                tableChanged(deck.applyDealPlan(plan));
+            else
+                deal(claim.slots.clone());
+            table.flushUiBatch();
+            GameEvents.commit(event, claim.player.id(), claim.cards);
+            env.recorder.record(FlightRecorder.CHECK_JUDGED, claim.player.id(), -1, FlightRecorder.VERDICT_POINT);
+            GameEvents.checkVerdict(claim.player.id(), claim.cards, "point");
+            claim.player.tell(new PlayerActor.Verdict(PlayerActor.Verdict.POINT));
+            resetTimer();
+            afterTableChange();
+        } else {
+            env.recorder.record(FlightRecorder.CHECK_JUDGED, claim.player.id(), -1, FlightRecorder.VERDICT_PENALTY);
+            GameEvents.checkVerdict(claim.player.id(), claim.cards, "penalty");
+            claim.player.tell(new PlayerActor.Verdict(PlayerActor.Verdict.PENALTY));
+        }
+    }
+
+    /**
+     * Updates the timer display and reshuffles if the turn has timed out.
+     */
+    private void tick() {
+        long now = env.clock.millis();
+        long delay = 1000;
+        if (env.config.turnTimeoutMillis > 0) {
+            long remaining = env.config.turnTimeoutMillis - (now - timeZero);
+            if (remaining <= 0) {
+                env.ui.setCountdown(0, true);
+                reshuffle();
+                if (finished)
+                    return;
+                remaining = env.config.turnTimeoutMillis;
+            }
+            boolean warn = remaining <= env.config.turnTimeoutWarningMillis;
+            env.ui.setCountdown(warn ? remaining : remaining + 999, warn);
+            delay = warn ? 10 : Math.max(1, (remaining - 1) % 1000 + 1);
+        } else {
+            env.ui.setElapsed(now - timeZero);
+        }
+        tellLater(TICK, delay);
+    }
+
+    /**
+     * Returns all the cards to the deck and deals a new table.
+     */
+    private void reshuffle() {
+        GameEvents.commit(round, deck.size());
+        long start = System.nanoTime();
+        GameEvents.Reshuffle event = GameEvents.beginReshuffle();
+        do {
+            table.beginUiBatch();
+            deck.returnCards(table.clearTable());
+            deal(table.findEmptySlots());
+            table.flushUiBatch();
+            resetTimer();
+        } while (!deck.noSetsLeft() && env.config.turnTimeoutMillis <= 0 && deck.noSetsOnTable());
+        GameEvents.commit(event, deck.size());
+        env.metrics.reshuffled(System.nanoTime() - start);
+        round = GameEvents.beginRound();
+        afterTableChange();
+    }
+
+    /**
+     * Deals cards from the deck to the given (empty) slots and tells the players.
+     */
+    private void deal(int[] slots) {
+        tableChanged(deck.deal(slots, this::returnCard));
+    }
+
+    /**
+     * Removes a card going back to the deck from the table (the players drop their tokens on the slot once told).
+     */
+    private void returnCard(int slot) {
+        table.removeTokens(slot);
+        table.removeCard(slot);
+    }
+
+    /**
+     * Tells the players about the cards now in the given slots.
+     */
+    private void tableChanged(int[] slots) {
+        Integer[] changed = new Integer[slots.length];
+        for (int i = 0; i < slots.length; i++)
+            changed[i] = table.slotToCard[slots[i]];
+        for (PlayerActor player : players)
+            player.tell(new PlayerActor.TableChanged(slots, changed));
+    }
+
+    /**
+     * Replaces as few cards as possible so that the table holds a set again (used instead of a full reshuffle).
+     *
+     * @return - true iff the table holds a set now.
+     */
+    private boolean partialRedeal() {
+        if (!deck.guaranteesSets())
+            return false;
+        table.beginUiBatch();
+        deal(table.findEmptySlots());
+        table.flushUiBatch();
+        return !deck.noSetsOnTable();
+    }
+
+    private void afterTableChange() {
+        if (deck.noSetsLeft()) {
+            finish();
+        } else if (env.config.turnTimeoutMillis <= 0 && deck.noSetsOnTable() && !partialRedeal()) {
+            reshuffle();
+        } else if (env.config.hints) {
+            table.hints();
+        }
+    }
+
+    private void resetTimer() {
+        timeZero = env.clock.millis();
+    }
+
+    /**
+     * Ends the game: stops the players and announces the winners.
+     */
+    private void finish() {
+        finished = true;
+        GameEvents.commit(round, deck.size());
+        for (PlayerActor player : players)
+            player.tell(PlayerActor.TERMINATE);
+        dealer.announceWinners();
+        onFinish.run();
+    }
+}
@@ -0,0 +1,304 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * This class holds the dealer's deck and the rules of dealing it, shared by the dealer of the threaded engines and the
+ * dealer of the actor engine: the order of the deal, the deal strategy, the deal plans and the end of the game.
+ * It is not thread safe: only the dealer uses it (holding the table's write lock in the threaded engines).
+ */
+class Deck {
+
+    /**
+     * The game environment object.
+     */
+    private final Env env;
+
+    private final Table table;
+
+    /**
+     * The list of card ids that are left in the deck (the top of the deck is the end of the list).
+     */
+    private final List<Integer> cards;
+
+    private final Random random;
+
+    /**
+     * Used by the "guaranteed" deal strategy (null if the cards are dealt blindly).
+     */
+    private final SetFinder setFinder;
+
+    /**
+     * The replacement deals prepared for the sets on the table (valid for the table version and deck size they were
+     * prepared for).
+     */
+    private final Map<List<Integer>, DealPlan> dealPlans = new HashMap<>();
+    private long dealPlansVersion = -1;
+    private int dealPlansDeckSize = -1;
+
+    /**
+     * Whether the table holds no set, known without a search for the table version it was recorded for.
+     */
+    private long setStatusVersion = -1;
+    private boolean setStatusNoSets;
+
+    /**
+     * The sets on the table, found once per table version.
+     */
+    private List<int[]> sets;
+    private long setsVersion = -1;
+
+    Deck(Env env, Table table) {
+        this.env = env;
+        this.table = table;
+        cards = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
+        random = env.config.dealerRandom();
+        SetFinder finder = new SetFinder(env.config);
+        setFinder = env.config.dealStrategy.equals("guaranteed") && finder.isSupported() ? finder : null;
+    }
+
+    /**
+     * @return - the cards left in the deck (the top of the deck is the end of the list).
+     */
+    List<Integer> cards() {
+        return cards;
+    }
+
+    int size() {
+        return cards.size();
+    }
+
+    boolean isEmpty() {
+        return cards.isEmpty();
+    }
+
+    /**
+     * @return - true iff the deal strategy chooses the cards so that the table holds a set.
+     */
+    boolean guaranteesSets() {
+        return setFinder != null;
+    }
+
+    /**
+     * Shuffles an array in place (used to shuffle the order in which cards are placed in slots).
+     *
+     * @param toShuffle - the array to shuffle.
+     * @return - the shuffled array.
+     */
+    int[] shuffle(int[] toShuffle) {
+        for (int i = toShuffle.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int temp = toShuffle[i];
+            toShuffle[i] = toShuffle[j];
+            toShuffle[j] = temp;
+        }
+        return toShuffle;
+    }
+
+    /**
+     * Shuffles the deck.
+     */
+    void shuffle() {
+        for (int i = cards.size() - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int temp = cards.get(i);
+            cards.set(i, cards.get(j));
+            cards.set(j, temp);
+        }
+    }
+
+    /**
+     * Returns cards taken off the table to the bottom of the deck, in random order.
+     *
+     * @param returned - the cards.
+     */
+    void returnCards(int[] returned) {
+        for (int card : shuffle(returned))
+            cards.add(card);
+    }
+
+    /**
+     * Deals cards from the deck to empty slots, in random order (shuffling the deck first if the table is empty).
+     * With the "guaranteed" deal strategy the cards are chosen so that the table holds a set, returning as few table
+     * cards to the deck as needed.
+     *
+     * @param empty      - the empty slots.
+     * @param returnCard - removes the card (and its tokens) from a slot whose card goes back to the deck.
+     * @return - the slots changed by the deal (the slots that are still empty once the deck ran out included).
+     */
+    int[] deal(int[] empty, IntConsumer returnCard) {
+        empty = shuffle(empty);
+        if (empty.length == env.config.tableSize)
+            shuffle();
+        if (setFinder != null)
+            empty = prepareGuaranteedDeal(empty, returnCard);
+
+        int[] slots = Arrays.copyOf(empty, Math.min(empty.length, cards.size()));
+        int[] dealt = new int[slots.length];
+        for (int i = 0; i < slots.length; i++)
+            dealt[i] = cards.remove(cards.size() - 1);
+        table.placeCards(dealt, slots);
+        return empty;
+    }
+
+    /**
+     * Reorders the deck so that dealing to the empty slots leaves a set on the table. If the empty slots are not
+     * enough, returns as few table cards to the deck as needed (a partial redeal instead of a full reshuffle).
+     *
+     * @param empty - the empty slots, in dealing order.
+     * @return - the slots to deal to (the empty slots and any slots that were emptied here).
+     */
+    private int[] prepareGuaranteedDeal(int[] empty, IntConsumer returnCard) {
+        List<Integer> onTable = cardsOnTable();
+        int dealt = Math.min(empty.length, cards.size());
+        List<Integer> afterBlindDeal = new ArrayList<>(onTable);
+        afterBlindDeal.addAll(cards.subList(cards.size() - dealt, cards.size()));
+        if (cards.isEmpty() || setFinder.hasSet(afterBlindDeal))
+            return empty;
+
+        //find the set needing the fewest deck cards, preferably no more than the empty slots
+        int[] set = setFinder.findSet(onTable, cards, dealt);
+        if (set == null)
+            set = setFinder.findSet(onTable, cards, cards.size());
+        if (set == null)
+            return empty;
+
+        //move the set's deck cards to the top of the deck
+        int fromDeck = 0;
+        for (int card : set) {
+            if (table.cardToSlot[card] == null) {
+                cards.remove((Integer) card);
+                cards.add(card);
+                fromDeck++;
+            }
+        }
+
+        //return cards that are not part of the set to the bottom of the deck, to make room for the set
+        int[] slots = Arrays.copyOf(empty, Math.max(empty.length, fromDeck));
+        int[] full = shuffle(table.findFullSlots());
+        for (int i = 0, freed = empty.length; freed < fromDeck && i < full.length; i++) {
+            int card = table.slotToCard[full[i]];
+            if (Arrays.stream(set).noneMatch(c -> c == card)) {
+                returnCard.accept(full[i]);
+                cards.add(0, card);
+                slots[freed++] = full[i];
+            }
+        }
+        return slots;
+    }
+
+    /**
+     * Prepares a replacement deal for each set on the table, so that collecting a set only needs to apply it.
+     */
+    void prepareDealPlans() {
+        long version = table.getVersion();
+        if (dealPlansVersion == version && dealPlansDeckSize == cards.size())
+            return;
+        dealPlans.clear();
+        List<Integer> onTable = cardsOnTable();
+        for (int[] set : setsOnTable()) {
+            int[] slots = new int[set.length];
+            int[] dealt = new int[Math.min(set.length, cards.size())];
+            List<Integer> after = new ArrayList<>(onTable);
+            for (int i = 0; i < set.length; i++) {
+                slots[i] = table.cardToSlot[set[i]];
+                after.remove((Integer) set[i]);
+            }
+            for (int i = 0; i < dealt.length; i++) {
+                dealt[i] = cards.get(cards.size() - 1 - i);
+                after.add(dealt[i]);
+            }
+            boolean hasSet = !env.util.findSets(after, 1).isEmpty();
+            Arrays.sort(slots);
+            dealPlans.put(setKey(set), new DealPlan(slots, dealt, hasSet));
+        }
+        dealPlansVersion = version;
+        dealPlansDeckSize = cards.size();
+    }
+
+    /**
+     * Finds the prepared deal for a set of cards.
+     *
+     * @param set - the cards of a legal set on the table.
+     * @return - the prepared deal, or null if it was not prepared, is no longer valid, or the deal strategy should
+     * choose the cards instead (the blind deal would leave the table without a set).
+     */
+    DealPlan findDealPlan(int[] set) {
+        if (dealPlansVersion != table.getVersion() || dealPlansDeckSize != cards.size())
+            return null;
+        DealPlan plan = dealPlans.get(setKey(set));
+        return plan != null && setFinder != null && !plan.hasSet() ? null : plan;
+    }
+
+    /**
+     * Deals the cards of a prepared plan (the set's cards were already removed from the table).
+     * The order of the slots is drawn here, like the blind deal draws it, so a seeded game does not depend on how
+     * often the plans were prepared.
+     *
+     * @return - the slots changed by the deal.
+     */
+    int[] applyDealPlan(DealPlan plan) {
+        int[] slots = shuffle(plan.getSlots().clone());
+        int[] dealt = new int[plan.getCards().length];
+        for (int i = 0; i < dealt.length; i++)
+            dealt[i] = cards.remove(cards.size() - 1);
+        table.placeCards(dealt, Arrays.copyOf(slots, dealt.length));
+        setStatusVersion = table.getVersion();
+        setStatusNoSets = !plan.hasSet();
+        return slots;
+    }
+
+    private static List<Integer> setKey(int[] cards) {
+        return Arrays.stream(cards).sorted().boxed().collect(Collectors.toList());
+    }
+
+    /**
+     * @return - true iff the table holds no set (with a single feature, iff the table and the deck are empty).
+     */
+    boolean noSetsOnTable() {
+        if (env.config.featureSize == 1)
+            return cards.isEmpty() && table.countCards() == 0;
+        return setStatusVersion == table.getVersion() ? setStatusNoSets : setsOnTable().isEmpty();
+    }
+
+    /**
+     * @return - the sets on the table (searched for once per table version).
+     */
+    List<int[]> setsOnTable() {
+        long version = table.getVersion();
+        if (setsVersion != version) {
+            sets = env.util.findSets(cardsOnTable(), Integer.MAX_VALUE);
+            setsVersion = version;
+        }
+        return sets;
+    }
+
+    /**
+     * @return - true iff the cards on the table and in the deck hold no set, so the game is over.
+     */
+    boolean noSetsLeft() {
+        if (env.config.featureSize == 1)
+            return cards.isEmpty() && table.countCards() == 0;
+        List<Integer> left = cardsOnTable();
+        left.addAll(cards);
+        return env.util.findSets(left, 1).isEmpty();
+    }
+
+    private List<Integer> cardsOnTable() {
+        List<Integer> onTable = new ArrayList<>();
+        for (Integer card : table.slotToCard)
+            if (card != null)
+                onTable.add(card);
+        return onTable;
+    }
+}
@@ -0,0 +1,235 @@
+package bguspl.set.ex;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.util.Arrays;
+
+/**
+ * The Java Flight Recorder events of the game engine, to see game operations on the same timeline as GC pauses, lock
+ * waits and thread states (e.g. java -XX:StartFlightRecording=filename=game.jfr ..., then open game.jfr in JDK Mission
+ * Control or print it with jfr print --categories "Set Game" game.jfr).
+ * When an event type is not recorded its helpers only check a flag (the event objects do not escape, so the JIT
+ * removes them) and its fields are never filled; a duration event is recorded only if it was enabled when it began.
+ * Note: the project is compiled for Java 11, the first release whose API has the jdk.jfr module; a runtime image
+ * built without the module has no event classes, so the begin helpers return null then, and the commit helpers
+ * ignore null events.
+ */
+final class GameEvents {
+
+    private static final boolean SUPPORTED = isSupported();
+
+    private static boolean isSupported() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    private GameEvents() {
+    }
+
+    @Name("bguspl.set.Round")
+    @Label("Round")
+    @Category({"Set Game", "Dealer"})
+    @Description("The time between two deals of the whole table")
+    @StackTrace(false)
+    static final class Round extends Event {
+        @Label("Cards in Deck")
+        int deck;
+    }
+
+    @Name("bguspl.set.Reshuffle")
+    @Label("Reshuffle")
+    @Category({"Set Game", "Dealer"})
+    @Description("Returning the cards to the deck and dealing the table again")
+    @StackTrace(false)
+    static final class Reshuffle extends Event {
+        @Label("Cards in Deck")
+        int deck;
+    }
+
+    @Name("bguspl.set.CheckEnqueued")
+    @Label("Check Enqueued")
+    @Category({"Set Game", "Checks"})
+    @StackTrace(false)
+    static final class CheckEnqueued extends Event {
+        @Label("Player Id")
+        int player;
+        @Label("Cards")
+        String cards;
+        @Label("Queue Depth")
+        int queueDepth;
+    }
+
+    @Name("bguspl.set.CheckVerdict")
+    @Label("Check Verdict")
+    @Category({"Set Game", "Checks"})
+    @StackTrace(false)
+    static final class CheckVerdict extends Event {
+        @Label("Player Id")
+        int player;
+        @Label("Cards")
+        String cards;
+        @Label("Verdict")
+        String verdict;
+    }
+
+    @Name("bguspl.set.GivePoint")
+    @Label("Give Point")
+    @Category({"Set Game", "Dealer"})
+    @Description("Removing a set from the table and dealing its replacement (the critical section)")
+    @StackTrace(false)
+    static final class GivePoint extends Event {
+        @Label("Player Id")
+        int player;
+        @Label("Cards")
+        String cards;
+    }
+
+    @Name("bguspl.set.Freeze")
+    @Label("Player Freeze")
+    @Category({"Set Game", "Players"})
+    @StackTrace(false)
+    static final class Freeze extends Event {
+        @Label("Player Id")
+        int player;
+        @Label("Freeze Milliseconds")
+        long millis;
+    }
+
+    @Name("bguspl.set.TableUpdate")
+    @Label("Table Update")
+    @Category({"Set Game", "Table"})
+    @Description("Placing or removing several cards at once")
+    @StackTrace(false)
+    static final class TableUpdate extends Event {
+        @Label("Operation")
+        String operation;
+        @Label("Slots")
+        String slots;
+        @Label("Cards")
+        String cards;
+    }
+
+    static Round beginRound() {
+        if (!SUPPORTED)
+            return null;
+        Round event = new Round();
+        if (!event.isEnabled())
+            return null;
+        event.begin();
+        return event;
+    }
+
+    static void commit(Round event, int deck) {
+        if (event != null && event.shouldCommit()) {
+            event.deck = deck;
+            event.commit();
+        }
+    }
+
+    static Reshuffle beginReshuffle() {
+        if (!SUPPORTED)
+            return null;
+        Reshuffle event = new Reshuffle();
+        if (!event.isEnabled())
+            return null;
+        event.begin();
+        return event;
+    }
+
+    static void commit(Reshuffle event, int deck) {
+        if (event != null && event.shouldCommit()) {
+            event.deck = deck;
+            event.commit();
+        }
+    }
+
+    static void checkEnqueued(int player, int[] cards, int queueDepth) {
+        if (!SUPPORTED)
+            return;
+        CheckEnqueued event = new CheckEnqueued();
+        if (event.shouldCommit()) {
+            event.player = player;
+            event.cards = Arrays.toString(cards);
+            event.queueDepth = queueDepth;
+            event.commit();
+        }
+    }
+
+    /**
+     * @param verdict - "point", "penalty" or "stale".
+     */
+    static void checkVerdict(int player, int[] cards, String verdict) {
+        if (!SUPPORTED)
+            return;
+        CheckVerdict event = new CheckVerdict();
+        if (event.shouldCommit()) {
+            event.player = player;
+            event.cards = Arrays.toString(cards);
+            event.verdict = verdict;
+            event.commit();
+        }
+    }
+
+    static GivePoint beginGivePoint() {
+        if (!SUPPORTED)
+            return null;
+        GivePoint event = new GivePoint();
+        if (!event.isEnabled())
+            return null;
+        event.begin();
+        return event;
+    }
+
+    static void commit(GivePoint event, int player, int[] cards) {
+        if (event != null && event.shouldCommit()) {
+            event.player = player;
+            event.cards = Arrays.toString(cards);
+            event.commit();
+        }
+    }
+
+    static Freeze beginFreeze(int player, long millis) {
+        if (!SUPPORTED)
+            return null;
+        Freeze event = new Freeze();
+        if (!event.isEnabled())
+            return null;
+        event.player = player;
+        event.millis = millis;
+        event.begin();
+        return event;
+    }
+
+    static void commit(Freeze event) {
+        if (event != null && event.shouldCommit())
+            event.commit();
+    }
+
+    static TableUpdate beginTableUpdate() {
+        if (!SUPPORTED)
+            return null;
+        TableUpdate event = new TableUpdate();
+        if (!event.isEnabled())
+            return null;
+        event.begin();
+        return event;
+    }
+
+    static void commit(TableUpdate event, String operation, int[] slots, int[] cards) {
+        if (event != null && event.shouldCommit()) {
+            event.operation = operation;
+            event.slots = Arrays.toString(slots);
+            event.cards = Arrays.toString(cards);
+            event.commit();
+        }
+    }
+}
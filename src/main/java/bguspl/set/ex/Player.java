@@ -1,10 +1,16 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
+import bguspl.set.FlightRecorder;
+import bguspl.set.ProfiledLock;
+import bguspl.set.ThreadLogger;
+import bguspl.set.VirtualThreads;
 
 import java.util.*;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * This class manages the players' threads and data
@@ -14,6 +20,11 @@ import java.util.concurrent.CopyOnWriteArrayList;
  */
 public class Player implements Runnable {
 
+    /**
+     * The maximal time a conflicting claim waits for the table to change (a timed-out turn may leave it unchanged).
+     */
+    private static final long CONFLICT_WAIT_MILLIS = 100;
+
     /**
      * The game environment object.
      */
@@ -69,6 +80,11 @@ public class Player implements Runnable {
      */
     private final ArrayBlockingQueue<Integer> actionQueue;
 
+    /**
+     * Used by the AI to choose slots.
+     */
+    private final Random random;
+
     /**
      * boolean checks
      */
@@ -78,7 +94,36 @@ public class Player implements Runnable {
 
     private volatile boolean checked;
 
-    private boolean penalized = false;
+    private volatile boolean penalized = false;
+
+    /**
+     * the lock the player (and its AI) blocks on while waiting for the dealer.
+     * Note: a j.u.c lock is used instead of the thread's monitor so that waiting does not pin virtual threads.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition wakeup;
+    private final Condition aiWakeup;
+    private final Condition keyInput;
+
+    /**
+     * The number of times the dealer woke the player up (guarded by lock), so a wait for the dealer can tell its
+     * wake-up from a spurious one.
+     */
+    private long wakeups;
+
+    /**
+     * The locks as taken by the player's operations: its own lock, the dealer's lock, removeCardsLock and the slot
+     * locks.
+     */
+    private final ProfiledLock awaitTokensLock, keyInputLock, awaitVerdictLock, signalAiLock, aiAwaitLock,
+            awaitUnblockLock, wakeUpLock;
+    private final ProfiledLock aiStartedLock, aiStoppedLock, awaitAiLock, aiFindSlotsLock, keyPressedLock;
+    private final ProfiledLock[] checkSlotLocks;
+
+    /**
+     * The actor handling this player's input (only when the game runs with the actor engine).
+     */
+    private volatile PlayerActor actor;
 
     /**
      * The class constructor.
@@ -95,8 +140,25 @@ public class Player implements Runnable {
         this.id = id;
         this.human = human;
         this.dealer = dealer;
+        awaitTokensLock = env.locks.lock(lock, "player " + id, "player", "awaitTokens");
+        keyInputLock = env.locks.lock(lock, "player " + id, "player", "keyInput");
+        awaitVerdictLock = env.locks.lock(lock, "player " + id, "player", "awaitVerdict");
+        signalAiLock = env.locks.lock(lock, "player " + id, "player", "signalAi");
+        aiAwaitLock = env.locks.lock(lock, "player " + id, "player", "aiAwait");
+        awaitUnblockLock = env.locks.lock(lock, "player " + id, "player", "awaitUnblock");
+        wakeUpLock = env.locks.lock(lock, "player " + id, "player", "wakeUp");
+        wakeup = wakeUpLock.newCondition();
+        aiWakeup = wakeUpLock.newCondition();
+        keyInput = wakeUpLock.newCondition();
+        aiStartedLock = env.locks.lock(dealer.lock, "dealer", "aiStarted");
+        aiStoppedLock = env.locks.lock(dealer.lock, "dealer", "aiStopped");
+        awaitAiLock = env.locks.lock(dealer.lock, "dealer", "awaitAi");
+        aiFindSlotsLock = env.locks.lock(dealer.removeCardsLock.readLock(), "removeCardsLock", "aiFindSlots");
+        keyPressedLock = env.locks.lock(dealer.removeCardsLock.writeLock(), "removeCardsLock", "keyPressed");
+        checkSlotLocks = table.slotLocks("check");
         tokensPlaced = new CopyOnWriteArrayList<>();
         actionQueue = new ArrayBlockingQueue<>(env.config.featureSize);
+        random = env.config.playerRandom(id);
         waiting = false;
         checked = true;
     }
@@ -107,24 +169,39 @@ public class Player implements Runnable {
     @Override
     public void run() {
         playerThread = Thread.currentThread();
-        System.out.printf("Info: Thread %s starting.%n", Thread.currentThread().getName());
+        ThreadLogger.logStart(env.logger, Thread.currentThread().getName());
 
         //if this player is not human, create the AI for this player
         if (!human) {
             createArtificialIntelligence();
 
             //notify the dealer that the aiThread has been created (used in Player::terminate()).
-            synchronized (dealer) {
-                dealer.notify();
+            aiStartedLock.lock();
+            try {
+                dealer.woken.signal();
+            } finally {
+                aiStartedLock.unlock();
             }
         }
         while (!terminate) {
-            if (!human) {
-                //while this player has placed less than 3 tokens, take the actions from the action queue and perform them.
-                while ((tokensPlaced.size() < env.config.featureSize || penalized) && !terminate) {
-                    if (!actionQueue.isEmpty())
-                        keyPressed(actionQueue.remove());
+            try {
+                if (!human) {
+                    //while this player has placed less than 3 tokens, take the actions from the action queue and perform them.
+                    while ((tokensPlaced.size() < env.config.featureSize || penalized) && !terminate)
+                        keyPressed(actionQueue.take());
+                } else {
+                    //wait until the human player has placed enough tokens (keyPressed wakes us up)
+                    awaitTokensLock.lock();
+                    try {
+                        while ((tokensPlaced.size() < env.config.featureSize || penalized) && !terminate) {
+                            keyInput.await();
+                        }
+                    } finally {
+                        awaitTokensLock.unlock();
+                    }
                 }
+            } catch (InterruptedException ignored) {
+                break;
             }
             //if we have placed 3 tokens, and we are not penalized, we send the check to the dealer
             if (tokensPlaced.size() == env.config.featureSize && !penalized) {
@@ -140,62 +217,88 @@ public class Player implements Runnable {
 
                     //for each token, we add the card it is on to the 'cards' array
                     for (int i = 0; i < env.config.featureSize; i++) {
-                        synchronized (table.slots[copy.get(i)]) {
+                        ProfiledLock slotLock = checkSlotLocks[copy.get(i)];
+                        slotLock.lock();
+                        try {
                             if (table.slotToCard[copy.get(i)] == null) {
                                 tokensPlaced.remove(copy.get(i));
                                 removedToken = true;
                             } else {
                                 cards[i] = table.slotToCard[copy.get(i)];
                             }
+                        } finally {
+                            slotLock.unlock();
                         }
                     }
 
-                    //if any of our tokens have been removed by other threads, break from the loop and start placing tokens again
-                    if (removedToken) {
-                        break;
-                    }
-
-                    //init the check to be sent
-                    Check check = new Check(cards, this);
-
-                    //send the check and wait until awakened by dealer.
-                    synchronized (playerThread) {
+                    //if any of our tokens have been removed by other threads, start placing tokens again
+                    if (!removedToken) {
+                        if (dealer.optimistic) {
+                            //in the optimistic engine, claim and verify the set on this thread
+                            int[] slots = copy.stream().mapToInt(Integer::intValue).toArray();
+                            long seen = table.claimChanges();
+                            int result = dealer.claim(this, slots, cards);
+                            if (result == Dealer.CLAIM_POINT) {
+                                point();
+                            } else if (result == Dealer.CLAIM_PENALTY) {
+                                penalty();
+                            } else {
+                                //someone else got to the cards first: wait until they are collected or released
+                                try {
+                                    table.awaitClaimChange(seen, CONFLICT_WAIT_MILLIS);
+                                } catch (InterruptedException ignored) {
+                                    break;
+                                }
+                            }
+                        } else {
+                            //init the check to be sent
+                            Check check = new Check(cards, this);
 
-                        dealer.send(check, tokensPlaced.size() == copy.size());
-                        if (tokensPlaced.size() == copy.size() && !terminate) {
+                            //send the check and wait until awakened by dealer.
+                            awaitVerdictLock.lock();
                             try {
-                                if (!terminate) {
-                                    playerThread.wait();
-                                } else {
-                                    break;
+                                //wait for the verdict, or for the dealer to drop the check (it wakes us up either way)
+                                checked = false;
+                                long seen = wakeups;
+                                dealer.send(check, tokensPlaced.size() == copy.size());
+                                while (tokensPlaced.size() == copy.size() && !checked && wakeups == seen && !terminate) {
+                                    wakeup.await();
                                 }
                             } catch (InterruptedException ignored) {
                                 break;
+                            } finally {
+                                awaitVerdictLock.unlock();
                             }
-                        }
-                    }
 
-                    //dealer changes checked and point booleans to tell player what to do.
-                    if (checked) {
-                        if (point) {
-                            point();
-                        } else {
-                            penalty();
+                            //dealer changes checked and point booleans to tell player what to do.
+                            if (checked) {
+                                if (check.getSubmitted() != 0) {
+                                    env.metrics.checkAnswered(System.nanoTime() - check.getSubmitted());
+                                }
+                                if (point) {
+                                    point();
+                                } else {
+                                    penalty();
+                                }
+                            }
+                            checked = false;
                         }
                     }
-                    checked = false;
                 }
             }
             waiting = false;
 
             //if I am not human, wake up the aiThread
             if (!human) {
-                synchronized (aiThread) {
-                    aiThread.notify();
+                signalAiLock.lock();
+                try {
+                    aiWakeup.signal();
+                } finally {
+                    signalAiLock.unlock();
                 }
             }
         }
-        System.out.printf("Info: Thread %s terminated.%n", Thread.currentThread().getName());
+        ThreadLogger.logStop(env.logger, Thread.currentThread().getName());
     }
 
     /**
@@ -204,25 +307,24 @@ public class Player implements Runnable {
      */
     private void createArtificialIntelligence() {
         // NOTE: this is a very, very smart AI (!)
-        aiThread = new Thread(() -> {
-            System.out.printf("Info: Thread %s starting.%n", Thread.currentThread().getName());
+        aiThread = VirtualThreads.newThread(() -> {
+            ThreadLogger.logStart(env.logger, Thread.currentThread().getName());
             while (!terminate) {
                 //while the actionQueue is not full, insert slots into it
                 while ((actionQueue.size() < env.config.featureSize) && !terminate) {
-                    Random rand = new Random();
 
                     //lock 'removeCardsLock' as a reader until I am finished looking at the cards
-                    dealer.removeCardsLock.readLock().lock();
+                    aiFindSlotsLock.lock();
                     int[] fullSlots;
                     try {
                         fullSlots = table.findFullSlots();
                     } finally {
-                        dealer.removeCardsLock.readLock().unlock();
+                        aiFindSlotsLock.unlock();
                     }
 
                     //if there are any full slots, pick one and add it to the actionQueue
                     if (fullSlots.length != 0) {
-                        int slot = rand.nextInt(fullSlots.length);
+                        int slot = random.nextInt(fullSlots.length);
                         try {
                             actionQueue.put(fullSlots[slot]);
                         } catch (InterruptedException ignored) {
@@ -233,25 +335,28 @@ public class Player implements Runnable {
 
                 //if this is waiting for a reply from the dealer, don't add actions to the queue
                 if (waiting) {
-                    synchronized (aiThread) {
-                        if (waiting) {
-                            try {
-                                if (!terminate)
-                                    aiThread.wait();
-                            } catch (InterruptedException ignored) {
-                                break;
-                            }
+                    aiAwaitLock.lock();
+                    try {
+                        if (waiting && !terminate) {
+                            aiWakeup.await();
                         }
+                    } catch (InterruptedException ignored) {
+                        break;
+                    } finally {
+                        aiAwaitLock.unlock();
                     }
                 }
             }
-            System.out.printf("Info: Thread %s terminated.%n", Thread.currentThread().getName());
+            ThreadLogger.logStop(env.logger, Thread.currentThread().getName());
 
             //notify the dealer that the AI has been terminated.
-            synchronized (dealer) {
-                dealer.notify();
+            aiStoppedLock.lock();
+            try {
+                dealer.woken.signal();
+            } finally {
+                aiStoppedLock.unlock();
             }
-        }, "computer-" + id);
+        }, "computer-" + id, env.config.virtualThreads);
         aiThread.start();
     }
 
@@ -263,13 +368,16 @@ public class Player implements Runnable {
         //if this player is not human, check that the aiThread has already been created, else, wait until it has been.
         if (!human) {
             if (aiThread == null) {
-                synchronized (dealer) {
+                awaitAiLock.lock();
+                try {
                     while (aiThread == null) {
                         try {
-                            dealer.wait();
+                            dealer.woken.await();
                         } catch (InterruptedException ignored) {
                         }
                     }
+                } finally {
+                    awaitAiLock.unlock();
                 }
             }
         }
@@ -278,9 +386,7 @@ public class Player implements Runnable {
         //if this player is not human, interrupt the aiThread and stop it.
         if (!human) {
             try {
-                synchronized (aiThread) {
-                    aiThread.interrupt();
-                }
+                aiThread.interrupt();
                 aiThread.join();
             } catch (InterruptedException ignored) {
             }
@@ -288,21 +394,22 @@ public class Player implements Runnable {
 
         //if the aiThread has not terminated yet, the dealer will wait until it has.
         if (!human && aiThread.isAlive()) {
-            synchronized (dealer) {
+            awaitAiLock.lock();
+            try {
                 if (aiThread.isAlive()) {
                     try {
-                        dealer.wait();
+                        dealer.woken.await();
                     } catch (InterruptedException ignored) {
                     }
                 }
+            } finally {
+                awaitAiLock.unlock();
             }
         }
 
         //now that the aiThread has been stopped, we interrupt the playerThread.
         try {
-            synchronized (playerThread) {
-                playerThread.interrupt();
-            }
+            playerThread.interrupt();
             playerThread.join();
         } catch (InterruptedException ignored) {
         }
@@ -314,24 +421,32 @@ public class Player implements Runnable {
      * @param slot - the slot corresponding to the key pressed.
      */
     public void keyPressed(int slot) {
+        PlayerActor actor = this.actor;
+        if (actor != null) {
+            actor.press(slot);
+            return;
+        }
+
         if (!waiting) {
 
             //if dealer is blocking all players, wait until notified.
             if (dealer.isBlockAllOthers()) {
+                long blockedStart = System.nanoTime();
+                awaitUnblockLock.lock();
                 try {
-                    synchronized (playerThread) {
-                        if (dealer.isBlockAllOthers()) {
-                            if (!terminate)
-                                playerThread.wait();
-                        }
+                    if (dealer.isBlockAllOthers() && !terminate) {
+                        wakeup.await();
                     }
                 } catch (InterruptedException ignored) {
                     return;
+                } finally {
+                    awaitUnblockLock.unlock();
+                    env.metrics.blocked(System.nanoTime() - blockedStart);
                 }
             }
 
             //if there is already a token on the slot, we remove it, otherwise, we add the slot to the list.
-            dealer.removeCardsLock.writeLock().lock();
+            keyPressedLock.lock();
             try {
                 if (tokensPlaced.contains(slot)) {
                     if (table.removeToken(id, slot)) {
@@ -344,11 +459,35 @@ public class Player implements Runnable {
                     penalized = false;
                 }
             } finally {
-                dealer.removeCardsLock.writeLock().unlock();
+                keyPressedLock.unlock();
+            }
+
+            //a human player's thread waits for its tokens to be placed
+            if (human) {
+                keyInputLock.lock();
+                try {
+                    keyInput.signal();
+                } finally {
+                    keyInputLock.unlock();
+                }
             }
         }
     }
 
+    /**
+     * Called by the dealer: wakes up the player (after a verdict, a dropped check or a table change) and anyone waiting
+     * on its behalf, e.g. a blocked key press.
+     */
+    public void wakeUp() {
+        wakeUpLock.lock();
+        try {
+            wakeups++;
+            wakeup.signalAll();
+        } finally {
+            wakeUpLock.unlock();
+        }
+    }
+
     /**
      * Award a point to a player and perform other related actions.
      *
@@ -364,14 +503,18 @@ public class Player implements Runnable {
         score++;
 
         //stop player for 'env.config.pointFreezeMillis' milliseconds
+        env.metrics.point();
+        env.recorder.record(FlightRecorder.FREEZE, id, -1, (int) env.config.pointFreezeMillis);
+        GameEvents.Freeze freeze = GameEvents.beginFreeze(id, env.config.pointFreezeMillis);
         try {
             for (long i = env.config.pointFreezeMillis; i > 0; i = i - 1000) {
                 env.ui.setFreeze(id, i);
-                Thread.sleep(1000);
+                env.clock.sleep(1000);
             }
             env.ui.setFreeze(id, 0);
         } catch (InterruptedException ignored) {
         }
+        GameEvents.commit(freeze);
 
         int ignored = table.countCards(); // this part is just for demonstration in the unit tests
     }
@@ -382,14 +525,18 @@ public class Player implements Runnable {
     public void penalty() {
 
         //stop player for 'env.config.penaltyFreezeMillis' milliseconds
+        env.metrics.penalty();
+        env.recorder.record(FlightRecorder.FREEZE, id, -1, (int) env.config.penaltyFreezeMillis);
+        GameEvents.Freeze freeze = GameEvents.beginFreeze(id, env.config.penaltyFreezeMillis);
         try {
             for (long i = env.config.penaltyFreezeMillis; i > 0; i = i - 1000) {
                 env.ui.setFreeze(id, i);
-                Thread.sleep(1000);
+                env.clock.sleep(1000);
             }
             env.ui.setFreeze(id, 0);
         } catch (InterruptedException ignored) {
         }
+        GameEvents.commit(freeze);
         penalized = true;
     }
 
@@ -437,6 +584,14 @@ public class Player implements Runnable {
         this.playerThread = playerThread;
     }
 
+    void setActor(PlayerActor actor) {
+        this.actor = actor;
+    }
+
+    public boolean isHuman() {
+        return human;
+    }
+
     public boolean isPenalized() {
         return penalized;
     }
@@ -0,0 +1,292 @@
+package bguspl.set.ex;
+
+import bguspl.set.Clock;
+import bguspl.set.Env;
+import bguspl.set.FlightRecorder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * This class manages a player's data in the actor engine.
+ * Key presses, verdicts, freeze timers and table changes all arrive as messages, so the player's state needs no
+ * locking or volatile flags.
+ */
+class PlayerActor extends Actor<PlayerActor.Message> {
+
+    /**
+     * The messages a player actor handles.
+     */
+    static abstract class Message {
+    }
+
+    /**
+     * A key press (human input, or a move generated by the computer player).
+     */
+    static final class KeyPress extends Message {
+        final int slot;
+
+        KeyPress(int slot) {
+            this.slot = slot;
+        }
+    }
+
+    /**
+     * The dealer's answer to a claim.
+     */
+    static final class Verdict extends Message {
+        static final int POINT = 0, PENALTY = 1, STALE = 2;
+        final int result;
+
+        Verdict(int result) {
+            this.result = result;
+        }
+    }
+
+    /**
+     * The cards in some slots were changed by the dealer.
+     */
+    static final class TableChanged extends Message {
+        final int[] slots;
+        final Integer[] cards;
+
+        TableChanged(int[] slots, Integer[] cards) {
+            this.slots = slots;
+            this.cards = cards;
+        }
+    }
+
+    /**
+     * One second of a freeze has passed.
+     */
+    static final class FreezeTick extends Message {
+        final long remaining;
+
+        FreezeTick(long remaining) {
+            this.remaining = remaining;
+        }
+    }
+
+    /**
+     * Generate the next move of a computer player.
+     */
+    static final Message MOVE = new Message() {
+    };
+
+    /**
+     * The game is over.
+     */
+    static final Message TERMINATE = new Message() {
+    };
+
+    /**
+     * The game environment object.
+     */
+    private final Env env;
+
+    /**
+     * Game entities.
+     */
+    private final Table table;
+    private final Player player;
+    private final DealerActor dealer;
+
+    /**
+     * The player's view of the table (the card in each slot, as last announced by the dealer).
+     */
+    private final Integer[] view;
+
+    /**
+     * The slots this player has placed tokens on.
+     */
+    private final List<Integer> tokens;
+
+    /**
+     * Used by computer players to choose slots.
+     */
+    private final Random random;
+
+    /**
+     * The player's state.
+     */
+    private boolean waiting;
+    private boolean penalized;
+    private boolean frozen;
+    private boolean moving;
+    private boolean terminated;
+
+    /**
+     * The time the pending claim was sent to the dealer (Clock.nanos).
+     */
+    private long claimed;
+
+    /**
+     * The flight recorder event of the current freeze (null if not recorded).
+     */
+    private GameEvents.Freeze freezeEvent;
+
+    PlayerActor(Env env, Table table, Player player, DealerActor dealer, Consumer<Throwable> onFailure,
+                Executor executor, Clock.Timers timers) {
+        super(executor, timers, onFailure);
+        this.env = env;
+        this.table = table;
+        this.player = player;
+        this.dealer = dealer;
+        random = env.config.playerRandom(player.id);
+        view = new Integer[env.config.tableSize];
+        tokens = new ArrayList<>(env.config.featureSize);
+    }
+
+    @Override
+    protected void receive(Message message) {
+        if (terminated)
+            return;
+
+        if (message instanceof KeyPress) {
+            keyPressed(((KeyPress) message).slot);
+        } else if (message == MOVE) {
+            moving = false;
+            move();
+        } else if (message instanceof TableChanged) {
+            tableChanged((TableChanged) message);
+        } else if (message instanceof Verdict) {
+            verdict(((Verdict) message).result);
+        } else if (message instanceof FreezeTick) {
+            freezeTick(((FreezeTick) message).remaining);
+        } else if (message == TERMINATE) {
+            terminated = true;
+        }
+        scheduleMove();
+    }
+
+    /**
+     * Toggles a token on a slot and claims a set once enough tokens are placed.
+     *
+     * @param slot - the slot corresponding to the key pressed.
+     */
+    private void keyPressed(int slot) {
+        if (waiting || frozen)
+            return;
+
+        if (tokens.contains(slot)) {
+            table.removeToken(player.id, slot);
+            tokens.remove((Integer) slot);
+            penalized = false;
+        } else if (tokens.size() < env.config.featureSize && view[slot] != null) {
+            table.placeToken(player.id, slot);
+            tokens.add(slot);
+            penalized = false;
+        }
+
+        if (tokens.size() == env.config.featureSize && !penalized) {
+            int[] slots = new int[tokens.size()];
+            int[] cards = new int[tokens.size()];
+            for (int i = 0; i < slots.length; i++) {
+                slots[i] = tokens.get(i);
+                cards[i] = view[slots[i]];
+            }
+            waiting = true;
+            claimed = env.clock.nanos();
+            dealer.submit(new DealerActor.Claim(this, slots, cards));
+        }
+    }
+
+    /**
+     * Presses a random slot (computer players only).
+     */
+    private void move() {
+        int full = 0;
+        for (Integer card : view)
+            if (card != null)
+                full++;
+        if (full == 0 || waiting || frozen)
+            return;
+
+        int pick = random.nextInt(full);
+        for (int slot = 0; slot < view.length; slot++) {
+            if (view[slot] != null && pick-- == 0) {
+                keyPressed(slot);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Keeps a single move of a computer player in flight while it is able to play.
+     */
+    private void scheduleMove() {
+        if (!player.isHuman() && !terminated && !moving && !waiting && !frozen) {
+            moving = true;
+            tell(MOVE);
+        }
+    }
+
+    private void tableChanged(TableChanged change) {
+        for (int i = 0; i < change.slots.length; i++) {
+            int slot = change.slots[i];
+            view[slot] = change.cards[i];
+            if (tokens.remove((Integer) slot))
+                table.removeToken(player.id, slot);
+        }
+    }
+
+    private void verdict(int result) {
+        waiting = false;
+        if (result != Verdict.STALE)
+            env.metrics.checkAnswered(env.clock.nanos() - claimed);
+        if (result == Verdict.POINT) {
+            env.metrics.point();
+            tokens.clear();
+            player.setScore(player.score() + 1);
+            env.ui.setScore(player.id, player.score());
+            freeze(env.config.pointFreezeMillis);
+        } else if (result == Verdict.PENALTY) {
+            env.metrics.penalty();
+            penalized = true;
+            freeze(env.config.penaltyFreezeMillis);
+        }
+    }
+
+    /**
+     * Freezes the player, counting down in the ui once per second.
+     *
+     * @param millis - the freeze time in milliseconds.
+     */
+    private void freeze(long millis) {
+        env.recorder.record(FlightRecorder.FREEZE, player.id, -1, (int) millis);
+        freezeEvent = GameEvents.beginFreeze(player.id, millis);
+        frozen = true;
+        freezeTick(millis);
+    }
+
+    private void freezeTick(long remaining) {
+        if (remaining > 0) {
+            env.ui.setFreeze(player.id, remaining);
+            tellLater(new FreezeTick(remaining - 1000), Math.min(1000, remaining));
+        } else {
+            env.ui.setFreeze(player.id, 0);
+            frozen = false;
+            GameEvents.commit(freezeEvent);
+            freezeEvent = null;
+        }
+    }
+
+    /**
+     * Called when a key is pressed (may be called from any thread).
+     *
+     * @param slot - the slot corresponding to the key pressed.
+     */
+    void press(int slot) {
+        tell(new KeyPress(slot));
+    }
+
+    /**
+     * @return - the id of the player.
+     */
+    int id() {
+        return player.id;
+    }
+}
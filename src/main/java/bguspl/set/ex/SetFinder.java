@@ -0,0 +1,134 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class finds sets quickly by completing them: for featureSize >= 3, any featureSize - 1 distinct cards are
+ * completed to a legal set by exactly one card (per feature, all the same value or all different values).
+ */
+class SetFinder {
+
+    private final int featureSize;
+    private final int featureCount;
+    private final int deckSize;
+
+    /**
+     * featureSize ^ i for each feature (the card id is the features written in base featureSize).
+     */
+    private final int[] powers;
+
+    SetFinder(Config config) {
+        featureSize = config.featureSize;
+        featureCount = config.featureCount;
+        deckSize = config.deckSize;
+        powers = new int[featureCount];
+        for (int i = featureCount - 1, power = 1; i >= 0; --i, power *= featureSize)
+            powers[i] = power;
+    }
+
+    /**
+     * @return true iff sets can be found by completion (i.e. featureSize >= 3).
+     */
+    boolean isSupported() {
+        return featureSize >= 3;
+    }
+
+    /**
+     * Finds the card that completes the given cards to a legal set.
+     *
+     * @param cards - an array holding (at least) count distinct cards.
+     * @param count - the number of cards to complete (featureSize - 1).
+     * @return the completing card, or -1 if there is none.
+     */
+    int complete(int[] cards, int count) {
+        int card = 0;
+        for (int i = 0; i < featureCount; ++i) {
+            int first = cards[0] / powers[i] % featureSize;
+            boolean same = true;
+            int seen = 0, sum = 0;
+            for (int j = 0; j < count; ++j) {
+                int value = cards[j] / powers[i] % featureSize;
+                same &= value == first;
+                seen |= 1 << value;
+                sum += value;
+            }
+            if (same)
+                card += first * powers[i];
+            else if (Integer.bitCount(seen) == count)
+                card += (featureSize * (featureSize - 1) / 2 - sum) * powers[i];
+            else
+                return -1;
+        }
+        return card;
+    }
+
+    /**
+     * @param cards - a collection of distinct cards.
+     * @return true iff the cards contain a legal set.
+     */
+    boolean hasSet(List<Integer> cards) {
+        return search(cards, 0, featureSize - 1, Collections.emptyList(), 0, 0, presence(cards), new int[featureSize], 0);
+    }
+
+    /**
+     * Finds a legal set made of table cards and at most maxDeckCards deck cards, using as few deck cards as possible.
+     *
+     * @param tableCards   - the cards on the table.
+     * @param deckCards    - the cards in the deck.
+     * @param maxDeckCards - the maximal number of deck cards in the set.
+     * @return the cards of the set, or null if there is no such set.
+     */
+    int[] findSet(List<Integer> tableCards, List<Integer> deckCards, int maxDeckCards) {
+        boolean[] inDeck = presence(deckCards);
+        int[] chosen = new int[featureSize];
+        for (int fromDeck = 1; fromDeck <= Math.min(featureSize, maxDeckCards); fromDeck++)
+            if (search(tableCards, 0, featureSize - fromDeck, deckCards, 0, fromDeck - 1, inDeck, chosen, 0))
+                return chosen;
+        return null;
+    }
+
+    /**
+     * Chooses tableNeed cards of the table and deckNeed cards of the deck, and checks if a card in 'completions'
+     * completes them to a set.
+     *
+     * @return true iff a set was found (its cards are then in 'chosen').
+     */
+    private boolean search(List<Integer> table, int tableFrom, int tableNeed, List<Integer> deck, int deckFrom,
+                           int deckNeed, boolean[] completions, int[] chosen, int pos) {
+        if (tableNeed > 0) {
+            for (int i = tableFrom; i <= table.size() - tableNeed; i++) {
+                chosen[pos] = table.get(i);
+                if (search(table, i + 1, tableNeed - 1, deck, deckFrom, deckNeed, completions, chosen, pos + 1))
+                    return true;
+            }
+            return false;
+        }
+        if (deckNeed > 0) {
+            for (int i = deckFrom; i <= deck.size() - deckNeed; i++) {
+                chosen[pos] = deck.get(i);
+                if (search(table, tableFrom, 0, deck, i + 1, deckNeed - 1, completions, chosen, pos + 1))
+                    return true;
+            }
+            return false;
+        }
+
+        int card = complete(chosen, pos);
+        if (card < 0 || !completions[card])
+            return false;
+        for (int i = 0; i < pos; i++)
+            if (chosen[i] == card)
+                return false;
+        chosen[pos] = card;
+        return true;
+    }
+
+    private boolean[] presence(List<Integer> cards) {
+        boolean[] present = new boolean[deckSize];
+        for (int card : cards)
+            present[card] = true;
+        return present;
+    }
+}
@@ -0,0 +1,380 @@
+package bguspl.set.ex;
+
+import bguspl.set.Clock;
+import bguspl.set.Env;
+import bguspl.set.FlightRecorder;
+import bguspl.set.LockProfiler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * This class plays a game of computer players as a discrete-event simulation on the calling thread: the key presses,
+ * the claims reaching the dealer, the ends of freezes and the turn timeouts are timed events in a priority queue,
+ * handled in time order on simulated time. The rules are the actor engine's, played on the same Table, Deck and Util, so
+ * a single core plays a game in a fraction of a millisecond (see bguspl.set.MonteCarlo for statistics over many games).
+ * The deal plans are not prepared, as they only save the dealer time.
+ * The dealer's table delays make it busy: a table update moves the simulated time forward, and the events that became
+ * due meanwhile are handled once it is done.
+ * Note: every player is a computer player, pressing a random card after a random (exponentially distributed) time.
+ */
+public class Simulator {
+
+    /**
+     * The outcome of a simulated game.
+     */
+    public static final class Result {
+        /**
+         * The simulated length of the game in milliseconds.
+         */
+        public final long millis;
+
+        /**
+         * The number of times the table was dealt again after the first deal.
+         */
+        public final int reshuffles;
+
+        public final int points, penalties, staleClaims;
+        public final int[] scores;
+
+        /**
+         * False iff the game was cut at the simulated time limit.
+         */
+        public final boolean finished;
+
+        Result(long millis, int reshuffles, int points, int penalties, int staleClaims, int[] scores, boolean finished) {
+            this.millis = millis;
+            this.reshuffles = reshuffles;
+            this.points = points;
+            this.penalties = penalties;
+            this.staleClaims = staleClaims;
+            this.scores = scores;
+            this.finished = finished;
+        }
+
+        /**
+         * @return - the difference between the highest and the lowest score.
+         */
+        public int spread() {
+            int min = Integer.MAX_VALUE, max = 0;
+            for (int score : scores) {
+                min = Math.min(min, score);
+                max = Math.max(max, score);
+            }
+            return scores.length == 0 ? 0 : max - min;
+        }
+    }
+
+    /**
+     * An action due at a simulated time; events due at the same time are handled in the order they were scheduled.
+     */
+    private static final class Event implements Comparable<Event> {
+        final long time;
+        final long sequence;
+        final Runnable action;
+
+        Event(long time, long sequence, Runnable action) {
+            this.time = time;
+            this.sequence = sequence;
+            this.action = action;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            return time != other.time ? Long.compare(time, other.time) : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * The simulated time as seen by the table: sleeping moves the time forward.
+     */
+    private final class EventClock implements Clock {
+        @Override
+        public long millis() {
+            return now;
+        }
+
+        @Override
+        public void sleep(long millis) {
+            now += Math.max(0, millis);
+        }
+
+        @Override
+        public Timers newTimers(String name) {
+            return new Timers() {
+                @Override
+                public void schedule(Runnable task, long millis) {
+                    at(now + millis, task);
+                }
+
+                @Override
+                public void shutdown() {
+                }
+            };
+        }
+    }
+
+    /**
+     * The game environment object (with the simulated clock).
+     */
+    private final Env env;
+
+    private final Table table;
+
+    /**
+     * The dealer's deck and the rules of dealing it.
+     */
+    private final Deck deck;
+
+    /**
+     * The mean time between two key presses of a player, the time a claim takes to reach the dealer and the simulated
+     * time the game is cut at (all in milliseconds).
+     */
+    private final long pressMillis;
+    private final long claimMillis;
+    private final long limitMillis;
+
+    private final PriorityQueue<Event> queue = new PriorityQueue<>();
+    private long now;
+    private long sequence;
+
+    /**
+     * The players' state (indexed by player id).
+     */
+    private final Random[] playerRandoms;
+    private final List<List<Integer>> tokens;
+    private final boolean[] waiting;
+    private final boolean[] penalized;
+    private final boolean[] frozen;
+    private final boolean[] moving;
+    private final int[] scores;
+
+    /**
+     * Incremented whenever the turn timer is reset, so a timeout of an earlier turn is ignored.
+     */
+    private int turn;
+
+    private int deals;
+    private int points;
+    private int penalties;
+    private int staleClaims;
+    private boolean started;
+    private boolean finished;
+
+    /**
+     * @param env         - the environment object (its clock is replaced by the simulated one).
+     * @param pressMillis - the mean time between two key presses of a player.
+     * @param claimMillis - the time a claim takes to reach the dealer.
+     * @param limitMillis - the simulated time the game is cut at.
+     */
+    public Simulator(Env env, long pressMillis, long claimMillis, long limitMillis) {
+        this.env = new Env(env.logger, env.config, env.ui, env.util, FlightRecorder.disabled(), env.metrics,
+                LockProfiler.disabled(), new EventClock());
+        this.pressMillis = pressMillis;
+        this.claimMillis = claimMillis;
+        this.limitMillis = limitMillis;
+        table = new Table(this.env);
+        deck = new Deck(this.env, table);
+
+        int players = env.config.players;
+        playerRandoms = new Random[players];
+        tokens = new ArrayList<>(players);
+        for (int i = 0; i < players; i++) {
+            playerRandoms[i] = env.config.playerRandom(i);
+            tokens.add(new ArrayList<>(env.config.featureSize));
+        }
+        waiting = new boolean[players];
+        penalized = new boolean[players];
+        frozen = new boolean[players];
+        moving = new boolean[players];
+        scores = new int[players];
+    }
+
+    /**
+     * Plays the game until it is over or the simulated time limit is reached.
+     *
+     * @return - the outcome of the game.
+     */
+    public Result run() {
+        if (started)
+            throw new IllegalStateException("a simulator plays a single game");
+        started = true;
+
+        reshuffle();
+        for (int player = 0; player < scores.length; player++)
+            scheduleMove(player);
+        while (!finished && !queue.isEmpty()) {
+            Event event = queue.poll();
+            if (event.time > limitMillis) {
+                //the game lasted until it was cut, not until its last event
+                now = limitMillis;
+                break;
+            }
+            now = Math.max(now, event.time);
+            event.action.run();
+        }
+        return new Result(Math.min(now, limitMillis), Math.max(0, deals - 1), points, penalties, staleClaims,
+                scores.clone(), finished);
+    }
+
+    /**
+     * Schedules an action (at the current time if the given time has passed).
+     */
+    private void at(long time, Runnable action) {
+        queue.add(new Event(Math.max(time, now), sequence++, action));
+    }
+
+    /**
+     * Keeps a single move of a player in flight while it is able to play.
+     */
+    private void scheduleMove(int player) {
+        if (finished || moving[player] || waiting[player] || frozen[player])
+            return;
+        moving[player] = true;
+        long delay = pressMillis <= 0 ? 0
+                : Math.round(-pressMillis * Math.log(1 - playerRandoms[player].nextDouble()));
+        at(now + delay, () -> {
+            moving[player] = false;
+            move(player);
+            scheduleMove(player);
+        });
+    }
+
+    /**
+     * Presses a random slot holding a card.
+     */
+    private void move(int player) {
+        int full = table.countCards();
+        if (full == 0 || waiting[player] || frozen[player])
+            return;
+
+        int pick = playerRandoms[player].nextInt(full);
+        for (int slot = 0; slot < table.slotToCard.length; slot++) {
+            if (table.slotToCard[slot] != null && pick-- == 0) {
+                keyPressed(player, slot);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Toggles a token on a slot and claims a set once enough tokens are placed.
+     */
+    private void keyPressed(int player, int slot) {
+        List<Integer> placed = tokens.get(player);
+        if (placed.contains(slot)) {
+            table.removeToken(player, slot);
+            placed.remove((Integer) slot);
+            penalized[player] = false;
+        } else if (placed.size() < env.config.featureSize && table.slotToCard[slot] != null) {
+            table.placeToken(player, slot);
+            placed.add(slot);
+            penalized[player] = false;
+        }
+
+        if (placed.size() == env.config.featureSize && !penalized[player]) {
+            int[] slots = new int[placed.size()];
+            int[] cards = new int[placed.size()];
+            for (int i = 0; i < slots.length; i++) {
+                slots[i] = placed.get(i);
+                cards[i] = table.slotToCard[slots[i]];
+            }
+            waiting[player] = true;
+            at(now + claimMillis, () -> claim(player, slots, cards));
+        }
+    }
+
+    /**
+     * Checks a player's claim when it reaches the dealer.
+     */
+    private void claim(int player, int[] slots, int[] cards) {
+        for (int i = 0; i < slots.length; i++) {
+            if (!Integer.valueOf(cards[i]).equals(table.slotToCard[slots[i]])) {
+                //the table has changed since the player placed its tokens
+                staleClaims++;
+                waiting[player] = false;
+                scheduleMove(player);
+                return;
+            }
+        }
+
+        waiting[player] = false;
+        if (env.util.testSet(cards) || env.config.featureSize == 1) {
+            for (int slot : slots)
+                table.removeTokens(slot);
+            table.removeCards(slots);
+            deal(slots);
+            points++;
+            tokens.get(player).clear();
+            scores[player]++;
+            freeze(player, env.config.pointFreezeMillis);
+            resetTimer();
+            afterTableChange();
+        } else {
+            penalties++;
+            penalized[player] = true;
+            freeze(player, env.config.penaltyFreezeMillis);
+        }
+    }
+
+    private void freeze(int player, long millis) {
+        if (millis > 0) {
+            frozen[player] = true;
+            at(now + millis, () -> {
+                frozen[player] = false;
+                scheduleMove(player);
+            });
+        } else {
+            scheduleMove(player);
+        }
+    }
+
+    /**
+     * Returns all the cards to the deck and deals a new table.
+     */
+    private void reshuffle() {
+        do {
+            deals++;
+            deck.returnCards(table.clearTable());
+            deal(table.findEmptySlots());
+            resetTimer();
+        } while (!deck.noSetsLeft() && env.config.turnTimeoutMillis <= 0 && deck.noSetsOnTable());
+        afterTableChange();
+    }
+
+    /**
+     * Deals cards from the deck to the given (empty) slots, dropping the players' tokens on the slots changed.
+     */
+    private void deal(int[] slots) {
+        int[] changed = deck.deal(slots, slot -> {
+            table.removeTokens(slot);
+            table.removeCard(slot);
+        });
+        for (int player = 0; player < tokens.size(); player++)
+            for (int slot : changed)
+                if (tokens.get(player).remove((Integer) slot))
+                    table.removeToken(player, slot);
+    }
+
+    private void afterTableChange() {
+        if (deck.noSetsLeft()) {
+            finished = true;
+        } else if (env.config.turnTimeoutMillis <= 0 && deck.noSetsOnTable()) {
+            if (deck.guaranteesSets())
+                deal(table.findEmptySlots());
+            if (deck.noSetsOnTable())
+                reshuffle();
+        }
+    }
+
+    private void resetTimer() {
+        int current = ++turn;
+        if (env.config.turnTimeoutMillis > 0)
+            at(now + env.config.turnTimeoutMillis, () -> {
+                if (turn == current)
+                    reshuffle();
+            });
+    }
+}
@@ -1,10 +1,19 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
+import bguspl.set.FlightRecorder;
+import bguspl.set.ProfiledLock;
+import bguspl.set.UiBatch;
+import bguspl.set.UserInterface;
 
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
 /**
@@ -34,6 +43,45 @@ public class Table {
      */
     protected final Slot[] slots;
 
+    /**
+     * The id of the player currently claiming each slot (-1 if none), used by the optimistic engine.
+     */
+    private final AtomicIntegerArray owners;
+
+    /**
+     * Incremented whenever a card is placed or removed (used to tell if data computed from the table is still valid).
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * Incremented whenever a card is placed or removed or claimed slots are released, i.e. whenever a claim that
+     * conflicted with the table may succeed (see awaitClaimChange).
+     */
+    private final AtomicLong claimChanges = new AtomicLong();
+    private final ReentrantLock claimLock = new ReentrantLock();
+    private final Condition claimChanged = claimLock.newCondition();
+
+    /**
+     * The number of threads in awaitClaimChange (changed while holding claimLock).
+     */
+    private volatile int claimWaiters;
+
+    /**
+     * The ui updates batched by the current thread (if it called beginUiBatch), applied at once on flushUiBatch.
+     */
+    private final ThreadLocal<UiBatch> uiBatch = new ThreadLocal<>();
+
+    /**
+     * The lock of each slot, held while its card changes or is checked.
+     */
+    private final ReentrantLock[] slotLocks;
+
+    /**
+     * The slot locks as taken by the table's bulk updates.
+     */
+    private final ProfiledLock[] placeCardsLocks;
+    private final ProfiledLock[] removeCardsLocks;
+
     /**
      * Constructor for testing.
      *
@@ -46,12 +94,18 @@ public class Table {
         this.slotToCard = slotToCard;
         this.cardToSlot = cardToSlot;
         slots = new Slot[slotToCard.length];
+        slotLocks = new ReentrantLock[slotToCard.length];
+        owners = new AtomicIntegerArray(slotToCard.length);
         for (int i = 0; i < slotToCard.length; i++) {
             slots[i] = new Slot();
+            slotLocks[i] = new ReentrantLock();
+            owners.set(i, -1);
             if (slotToCard[i] != null) {
                 slots[i].setCardId(slotToCard[i]);
             }
         }
+        placeCardsLocks = slotLocks("placeCards");
+        removeCardsLocks = slotLocks("removeCards");
     }
 
     /**
@@ -63,6 +117,17 @@ public class Table {
         this(env, new Integer[env.config.tableSize], new Integer[env.config.deckSize]);
     }
 
+    /**
+     * @param operation - the operation taking the slot locks.
+     * @return - the lock of each slot, as taken by the operation.
+     */
+    ProfiledLock[] slotLocks(String operation) {
+        ProfiledLock[] locks = new ProfiledLock[slotLocks.length];
+        for (int i = 0; i < locks.length; i++)
+            locks[i] = env.locks.lock(slotLocks[i], "slot " + i, "slot", operation);
+        return locks;
+    }
+
     /**
      * This method prints all possible legal sets of cards that are currently on the table.
      */
@@ -76,6 +141,31 @@ public class Table {
         });
     }
 
+    /**
+     * Starts batching the ui updates of the current thread: until flushUiBatch is called they are collected instead
+     * of being applied, so a critical section pays for a single (coalesced) ui update.
+     */
+    public void beginUiBatch() {
+        if (uiBatch.get() == null)
+            uiBatch.set(new UiBatch(env.ui));
+    }
+
+    /**
+     * Applies the ui updates batched by the current thread and stops batching.
+     */
+    public void flushUiBatch() {
+        UiBatch batch = uiBatch.get();
+        if (batch != null) {
+            uiBatch.remove();
+            batch.flush();
+        }
+    }
+
+    private UserInterface ui() {
+        UiBatch batch = uiBatch.get();
+        return batch != null ? batch : env.ui;
+    }
+
     /**
      * Count the number of cards currently on the table.
      *
@@ -98,7 +188,7 @@ public class Table {
      */
     public void placeCard(int card, int slot) {
         try {
-            Thread.sleep(env.config.tableDelayMillis);
+            env.clock.sleep(env.config.tableDelayMillis);
         } catch (InterruptedException ignored) {
         }
 
@@ -108,9 +198,11 @@ public class Table {
         // TODO implement
 
         slots[slot].setCardId(card);
+        changed();
+        env.recorder.record(FlightRecorder.CARD_PLACED, -1, slot, card);
 
         //place card in ui
-        env.ui.placeCard(card, slot);
+        ui().placeCard(card, slot);
     }
 
     /**
@@ -120,16 +212,105 @@ public class Table {
      */
     public void removeCard(int slot) {
         try {
-            Thread.sleep(env.config.tableDelayMillis);
+            env.clock.sleep(env.config.tableDelayMillis);
         } catch (InterruptedException ignored) {
         }
 
-        cardToSlot[slotToCard[slot]] = null;
+        int card = slotToCard[slot];
+        cardToSlot[card] = null;
         slotToCard[slot] = null;
         slots[slot].setCardId(-1);
+        changed();
+        env.recorder.record(FlightRecorder.CARD_REMOVED, -1, slot, card);
 
         //remove card in ui
-        env.ui.removeCard(slot);
+        ui().removeCard(slot);
+    }
+
+    /**
+     * Places several cards on the table at once, with a single delay and a single ui update.
+     *
+     * @param cards - the card ids to place.
+     * @param slots - the slots in which the cards should be placed (respectively).
+     * @post - each card placed is on the table, in its assigned slot.
+     */
+    public void placeCards(int[] cards, int[] slots) {
+        if (cards.length == 0)
+            return;
+        GameEvents.TableUpdate event = GameEvents.beginTableUpdate();
+        try {
+            env.clock.sleep(env.config.tableBulkDelayMillis);
+        } catch (InterruptedException ignored) {
+        }
+
+        for (int i = 0; i < cards.length; i++) {
+            ProfiledLock lock = placeCardsLocks[slots[i]];
+            lock.lock();
+            try {
+                cardToSlot[cards[i]] = slots[i];
+                slotToCard[slots[i]] = cards[i];
+                this.slots[slots[i]].setCardId(cards[i]);
+            } finally {
+                lock.unlock();
+            }
+            env.recorder.record(FlightRecorder.CARD_PLACED, -1, slots[i], cards[i]);
+        }
+        changed();
+
+        //place the cards in ui
+        ui().placeCards(cards, slots);
+        GameEvents.commit(event, "placeCards", slots, cards);
+    }
+
+    /**
+     * Removes the cards from several grid slots at once, with a single delay and a single ui update.
+     *
+     * @param slots - the slots from which to remove the cards.
+     * @return - the cards that were removed (respectively).
+     */
+    public int[] removeCards(int[] slots) {
+        int[] cards = new int[slots.length];
+        if (slots.length == 0)
+            return cards;
+        GameEvents.TableUpdate event = GameEvents.beginTableUpdate();
+        try {
+            env.clock.sleep(env.config.tableBulkDelayMillis);
+        } catch (InterruptedException ignored) {
+        }
+
+        for (int i = 0; i < slots.length; i++) {
+            ProfiledLock lock = removeCardsLocks[slots[i]];
+            lock.lock();
+            try {
+                cards[i] = slotToCard[slots[i]];
+                cardToSlot[cards[i]] = null;
+                slotToCard[slots[i]] = null;
+                this.slots[slots[i]].setCardId(-1);
+            } finally {
+                lock.unlock();
+            }
+            env.recorder.record(FlightRecorder.CARD_REMOVED, -1, slots[i], cards[i]);
+        }
+        changed();
+
+        //remove the cards in ui
+        ui().removeCards(slots);
+        GameEvents.commit(event, "removeCards", slots, cards);
+        return cards;
+    }
+
+    /**
+     * Removes all the cards and all the tokens from the table.
+     *
+     * @return - the cards that were on the table.
+     * @post - the table is empty.
+     */
+    public int[] clearTable() {
+        for (Slot slot : slots)
+            slot.removeTokens();
+        env.recorder.record(FlightRecorder.TOKENS_REMOVED, -1, -1, 0);
+        ui().removeTokens();
+        return removeCards(findFullSlots());
     }
 
     /**
@@ -141,9 +322,10 @@ public class Table {
     public void placeToken(int player, int slot) {
         // TODO implement
         slots[slot].placeToken(player);
+        env.recorder.record(FlightRecorder.TOKEN_PLACED, player, slot, 0);
 
         //place token in ui
-        env.ui.placeToken(player, slot);
+        ui().placeToken(player, slot);
     }
 
     /**
@@ -158,9 +340,10 @@ public class Table {
     public boolean removeToken(int player, int slot) {
         boolean canRemove = slots[slot].removeToken(player);
         if (canRemove) {
+            env.recorder.record(FlightRecorder.TOKEN_REMOVED, player, slot, 0);
 
             //remove token in ui
-            env.ui.removeToken(player, slot);
+            ui().removeToken(player, slot);
         }
         return canRemove;
     }
@@ -174,7 +357,8 @@ public class Table {
      */
     public void removeTokens(int slot) {
         slots[slot].removeTokens();
-        env.ui.removeTokens(slot);
+        env.recorder.record(FlightRecorder.TOKENS_REMOVED, -1, slot, 0);
+        ui().removeTokens(slot);
     }
 
     /**
@@ -200,6 +384,81 @@ public class Table {
         return empty;
     }
 
+    /**
+     * Atomically claims a group of slots for a player (all or nothing).
+     *
+     * @param player - the player claiming the slots.
+     * @param slots  - the slots to claim.
+     * @return - true iff all the slots were claimed by the player.
+     * @post - if false is returned, none of the slots is claimed by the player.
+     */
+    public boolean claimSlots(int player, int[] slots) {
+        for (int i = 0; i < slots.length; i++) {
+            if (!owners.compareAndSet(slots[i], -1, player)) {
+                //another player got one of the slots first, roll back
+                for (int j = 0; j < i; j++)
+                    owners.compareAndSet(slots[j], player, -1);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Releases slots previously claimed by a player.
+     *
+     * @param player - the player that claimed the slots.
+     * @param slots  - the slots to release.
+     */
+    public void releaseSlots(int player, int[] slots) {
+        for (int slot : slots)
+            owners.compareAndSet(slot, player, -1);
+        claimChanged();
+    }
+
+    /**
+     * @return - the number of table changes a conflicting claim waits for (see awaitClaimChange).
+     */
+    public long claimChanges() {
+        return claimChanges.get();
+    }
+
+    /**
+     * Waits until the cards change or claimed slots are released, so a conflicting claim blocks instead of spinning.
+     *
+     * @param seen   - the value of claimChanges() read before the claim.
+     * @param millis - the maximal time to wait.
+     */
+    public void awaitClaimChange(long seen, long millis) throws InterruptedException {
+        claimLock.lock();
+        claimWaiters++;
+        try {
+            long nanos = TimeUnit.MILLISECONDS.toNanos(millis);
+            while (claimChanges.get() == seen && nanos > 0)
+                nanos = claimChanged.awaitNanos(nanos);
+        } finally {
+            claimWaiters--;
+            claimLock.unlock();
+        }
+    }
+
+    private void changed() {
+        version.incrementAndGet();
+        claimChanged();
+    }
+
+    private void claimChanged() {
+        claimChanges.incrementAndGet();
+        if (claimWaiters > 0) {
+            claimLock.lock();
+            try {
+                claimChanged.signalAll();
+            } finally {
+                claimLock.unlock();
+            }
+        }
+    }
+
     public int[] findFullSlots() {
         int counter = 0;
         for (Integer slot : slotToCard) {
@@ -218,6 +477,10 @@ public class Table {
         return full;
     }
 
+    public long getVersion() {
+        return version.get();
+    }
+
     public Integer[] getSlotToCard() {
         return slotToCard;
     }
@@ -0,0 +1,119 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UserInterface;
+import bguspl.set.Util;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class ActorEngineTest {
+
+    @Mock
+    private UserInterface ui;
+
+    @Mock
+    private Logger logger;
+
+    /**
+     * The state of a finished game.
+     */
+    private static final class Outcome {
+        int[] scores;
+        List<Integer> cardsLeft;
+        boolean setsLeft;
+        long millis;
+    }
+
+    private Outcome play(long seed) {
+        Properties properties = new Properties();
+        properties.put("Engine", "actor");
+        properties.put("ActorThreads", "1");
+        properties.put("Clock", "simulated");
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", "3");
+        properties.put("FeatureCount", "3");
+        properties.put("EndGamePauseSeconds", "0");
+        properties.put("Seed", Long.toString(seed));
+        Config config = new Config(logger, properties);
+        Util util = new UtilImpl(config);
+        Env env = new Env(logger, config, ui, util);
+
+        //the time the game ended (the clock may move on while the engine shuts down)
+        Outcome outcome = new Outcome();
+        lenient().doAnswer(invocation -> outcome.millis = env.clock.millis()).when(ui).announceWinner(any());
+
+        Table table = new Table(env);
+        Player[] players = new Player[config.players];
+        Dealer dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, false);
+        new ActorEngine(env, table, dealer, players).run();
+
+        outcome.scores = Arrays.stream(players).mapToInt(Player::score).toArray();
+        outcome.cardsLeft = new ArrayList<>(dealer.getDeck());
+        for (Integer card : table.slotToCard)
+            if (card != null)
+                outcome.cardsLeft.add(card);
+        outcome.setsLeft = !util.findSets(outcome.cardsLeft, 1).isEmpty();
+        return outcome;
+    }
+
+    @Test
+    @Timeout(30)
+    void run_playsTheGameToTheEnd() {
+        Outcome outcome = play(7);
+
+        assertFalse(outcome.setsLeft);
+        assertEquals(27 - outcome.cardsLeft.size(), 3 * Arrays.stream(outcome.scores).sum());
+        verify(ui).announceWinner(any());
+    }
+
+    @Test
+    @Timeout(30)
+    void run_sameSeedSameGame() {
+        Outcome first = play(7);
+        Outcome second = play(7);
+
+        assertArrayEquals(first.scores, second.scores);
+        assertEquals(first.cardsLeft, second.cardsLeft);
+        assertEquals(first.millis, second.millis);
+    }
+
+    @Test
+    @Timeout(30)
+    void run_actorFailureEndsTheGame() {
+        IllegalStateException broken = new IllegalStateException("broken ui");
+        doThrow(broken).when(ui).setCountdown(anyLong(), anyBoolean());
+
+        IllegalStateException thrown = assertThrows(IllegalStateException.class, () -> play(7));
+
+        assertSame(broken, thrown.getCause());
+        verify(ui, never()).announceWinner(any());
+    }
+}
@@ -12,6 +12,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.Properties;
 import java.util.logging.Logger;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -95,4 +96,19 @@ class DealerTest {
 
         assertEquals(4, dealer.announceWinners().length);
     }
+
+    @Test
+    void shuffle_sameSeedSameOrder() {
+        Properties properties = new Properties();
+        properties.setProperty("Seed", "42");
+        Env seeded = new Env(logger, new Config(logger, properties), ui, util);
+        int[] slots = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11};
+
+        int[] first = new Dealer(seeded, table, new Player[0]).shuffle(slots.clone());
+        int[] second = new Dealer(seeded, table, new Player[0]).shuffle(slots.clone());
+
+        assertArrayEquals(first, second);
+        assertNotEquals(seeded.config.playerRandom(0).nextLong(), seeded.config.playerRandom(1).nextLong());
+        assertEquals(seeded.config.playerRandom(1).nextLong(), seeded.config.playerRandom(1).nextLong());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,90 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UserInterface;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+@ExtendWith(MockitoExtension.class)
+class DeckTest {
+
+    Env env;
+    Table table;
+    @Mock
+    private UserInterface ui;
+    @Mock
+    private Logger logger;
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = new Properties();
+        properties.put("FeatureCount", "3");
+        properties.put("TableDelaySeconds", "0");
+        properties.put("Seed", "5");
+        Config config = new Config(logger, properties);
+        env = new Env(logger, config, ui, new UtilImpl(config));
+    }
+
+    /**
+     * @return - a deck of the seeded game, dealt blindly to a new table.
+     */
+    private Deck dealtDeck() {
+        table = new Table(env);
+        Deck deck = new Deck(env, table);
+        deck.deal(table.findEmptySlots(), slot -> {
+            throw new AssertionError("a blind deal returns no cards");
+        });
+        return deck;
+    }
+
+    private int[] slotsOf(int[] set) {
+        int[] slots = new int[set.length];
+        for (int i = 0; i < set.length; i++)
+            slots[i] = table.cardToSlot[set[i]];
+        return slots;
+    }
+
+    @Test
+    void applyDealPlan_DealsLikeTheBlindDeal() {
+        Deck blind = dealtDeck();
+        int[] set = blind.setsOnTable().get(0);
+        table.removeCards(slotsOf(set));
+        blind.deal(table.findEmptySlots(), slot -> {
+        });
+        Integer[] dealt = table.slotToCard.clone();
+
+        //preparing the plans (any number of times) draws nothing from the dealer's random
+        Deck planned = dealtDeck();
+        planned.prepareDealPlans();
+        int card = table.slotToCard[0];
+        table.removeCard(0);
+        table.placeCard(card, 0);
+        planned.prepareDealPlans();
+        DealPlan plan = planned.findDealPlan(set);
+        assertNotNull(plan);
+        table.removeCards(slotsOf(set));
+        planned.applyDealPlan(plan);
+
+        assertArrayEquals(dealt, table.slotToCard);
+        assertEquals(blind.cards(), planned.cards());
+    }
+
+    @Test
+    void setsOnTable_SearchedOncePerTableVersion() {
+        Deck deck = dealtDeck();
+        assertSame(deck.setsOnTable(), deck.setsOnTable());
+    }
+}
@@ -0,0 +1,67 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Util;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class SetFinderTest {
+
+    SetFinder setFinder;
+    Util util;
+
+    @Mock
+    private Logger logger;
+
+    @BeforeEach
+    void setUp() {
+        Config config = new Config(logger, (String) null);
+        setFinder = new SetFinder(config);
+        util = new UtilImpl(config);
+    }
+
+    @Test
+    void complete_AllPairs() {
+        for (int a = 0; a < 81; a++) {
+            for (int b = a + 1; b < 81; b++) {
+                int c = setFinder.complete(new int[]{a, b}, 2);
+                assertTrue(c >= 0 && c != a && c != b);
+                assertTrue(util.testSet(new int[]{a, b, c}));
+            }
+        }
+    }
+
+    @Test
+    void hasSet() {
+        assertTrue(setFinder.hasSet(Arrays.asList(5, 0, 1, 2)));
+        assertFalse(setFinder.hasSet(Arrays.asList(0, 1, 3, 4)));
+    }
+
+    @Test
+    void findSet_UsesFewestDeckCards() {
+        List<Integer> table = Arrays.asList(0, 1, 3, 4);
+        List<Integer> deck = Arrays.asList(80, 2, 79);
+
+        int[] set = setFinder.findSet(table, deck, 1);
+        assertNotNull(set);
+        assertTrue(util.testSet(set));
+        assertEquals(1, Arrays.stream(set).filter(deck::contains).count());
+    }
+
+    @Test
+    void findSet_NotEnoughDeckCards() {
+        assertNull(setFinder.findSet(Arrays.asList(0, 1, 3, 4), Collections.singletonList(80), 1));
+    }
+}
@@ -0,0 +1,81 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UserInterface;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(MockitoExtension.class)
+class SimulatorTest {
+
+    Properties properties;
+    @Mock
+    private UserInterface ui;
+    @Mock
+    private Logger logger;
+
+    @BeforeEach
+    void setUp() {
+        properties = new Properties();
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", "3");
+        properties.put("PenaltyFreezeSeconds", "0");
+        properties.put("Seed", "7");
+    }
+
+    private Simulator simulator(long pressMillis, long claimMillis, long limitMillis) {
+        Config config = new Config(logger, properties);
+        return new Simulator(new Env(logger, config, ui, new UtilImpl(config)), pressMillis, claimMillis, limitMillis);
+    }
+
+    @Test
+    void run_turnTimeoutReshuffles() {
+        properties.put("TurnTimeoutSeconds", "1");
+
+        //the players are too slow to press a key before the game is cut
+        Simulator.Result result = simulator(1_000_000_000, 0, 5_000).run();
+
+        assertEquals(0, result.points + result.penalties);
+        assertTrue(result.reshuffles >= 4);
+    }
+
+    @Test
+    void run_claimAfterTableChangeIsStale() {
+        properties.put("TurnTimeoutSeconds", "1");
+
+        //every claim reaches the dealer after the table was dealt again
+        Simulator.Result result = simulator(10, 2_000, 10_000).run();
+
+        assertTrue(result.staleClaims > 0);
+        assertEquals(0, result.points);
+    }
+
+    @Test
+    void run_cutAtTheTimeLimit() {
+        Simulator.Result result = simulator(100, 0, 1_000).run();
+
+        assertFalse(result.finished);
+        assertEquals(1_000, result.millis);
+    }
+
+    @Test
+    void run_onlyOnce() {
+        Simulator simulator = simulator(100, 0, 3_600_000);
+        simulator.run();
+
+        assertThrows(IllegalStateException.class, simulator::run);
+    }
+}
@@ -2,21 +2,37 @@ package bguspl.set.ex;
 
 import bguspl.set.Config;
 import bguspl.set.Env;
+import bguspl.set.FlightRecorder;
+import bguspl.set.GameMetrics;
+import bguspl.set.LockProfiler;
+import bguspl.set.SimulatedClock;
+import bguspl.set.UiBatch;
+import bguspl.set.UiEvent;
 import bguspl.set.UserInterface;
 import bguspl.set.Util;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 
 @ExtendWith(MockitoExtension.class)
 class TableTest {
@@ -35,6 +51,9 @@ class TableTest {
     @Mock
     private Logger logger;
 
+    @Captor
+    private ArgumentCaptor<List<UiEvent>> events;
+
     void assertInvariants() {
         assertTrue((table.slotToCard.length == table.cardToSlot.length) && (table.cardToSlot.length == table.slots.length));
         for (int i = 0; i < table.slotToCard.length; i++) {
@@ -121,6 +140,24 @@ class TableTest {
         placeSomeCardsAndAssert();
     }
 
+    @Test
+    void placeCard_SimulatedClockAdvancesTheDelay() {
+        Properties properties = new Properties();
+        properties.put("Rows", "2");
+        properties.put("Columns", "2");
+        properties.put("TableDelaySeconds", "60");
+        Config config = new Config(logger, properties);
+        SimulatedClock clock = new SimulatedClock();
+        Env env = new Env(logger, config, ui, util, FlightRecorder.disabled(), new GameMetrics(), LockProfiler.disabled(), clock);
+        table = new Table(env, new Integer[config.tableSize], new Integer[config.deckSize]);
+
+        long start = System.currentTimeMillis();
+        table.placeCard(8, 2);
+        assertEquals(60000, clock.millis());
+        assertTrue(System.currentTimeMillis() - start < 10000);
+        assertEquals(8, (int) table.slotToCard[2]);
+    }
+
     @Test
     void removeToken_ThereAreTokens() {
         table.placeToken(1,3);
@@ -151,6 +188,93 @@ class TableTest {
         assertTrue(table.slots[3].getTokens().length == 0);
     }
 
+    @Test
+    void placeCards_EmptyTable() {
+        table.placeCards(new int[]{7, 9}, new int[]{0, 3});
+
+        assertEquals(7, (int) slotToCard[0]);
+        assertEquals(9, (int) slotToCard[3]);
+        assertEquals(3, (int) cardToSlot[9]);
+        verify(ui).placeCards(new int[]{7, 9}, new int[]{0, 3});
+    }
+
+    @Test
+    void clearTable_AllSlotsAreFilled() {
+        fillAllSlots();
+        table.placeToken(1, 2);
+
+        int[] cards = table.clearTable();
+
+        assertEquals(slotToCard.length, cards.length);
+        assertEquals(0, table.countCards());
+        assertEquals(0, table.slots[2].getTokens().length);
+        verify(ui).removeTokens();
+    }
+
+    @Test
+    void claimSlots_FreeSlots() {
+        assertTrue(table.claimSlots(1, new int[]{0, 1, 2}));
+        assertFalse(table.claimSlots(2, new int[]{2, 3}));
+        table.releaseSlots(1, new int[]{0, 1, 2});
+        assertTrue(table.claimSlots(2, new int[]{2, 3}));
+    }
+
+    @Test
+    void claimSlots_ConflictRollsBack() {
+        assertTrue(table.claimSlots(1, new int[]{2}));
+        assertFalse(table.claimSlots(2, new int[]{0, 1, 2}));
+
+        //the slots claimed before the conflict were released
+        assertTrue(table.claimSlots(3, new int[]{0, 1}));
+    }
+
+    @Test
+    void flushUiBatch_CoalescesUpdates() {
+        table.beginUiBatch();
+        table.placeToken(1, 0);
+        table.removeToken(1, 0);
+        table.placeToken(2, 1);
+        table.placeCards(new int[]{7}, new int[]{3});
+        table.removeTokens(1);
+        verifyNoInteractions(ui);
+
+        table.flushUiBatch();
+        verify(ui).apply(events.capture());
+        assertEquals(Arrays.asList("placing card 7 in slot 3", "removing tokens from slot 1"),
+                events.getValue().stream().map(UiEvent::toString).collect(Collectors.toList()));
+    }
+
+    @Test
+    void flushUiBatch_KeepsTheRemovalOfATokenPlacedBeforeTheBatch() {
+        table.beginUiBatch();
+        table.placeToken(2, 3);
+        table.flushUiBatch();
+
+        table.beginUiBatch();
+        table.removeToken(2, 3);
+        table.placeToken(2, 3);
+        table.removeToken(2, 3);
+        table.flushUiBatch();
+
+        verify(ui, times(2)).apply(events.capture());
+        assertEquals(Arrays.asList("removing player 3 token from slot 3"),
+                events.getValue().stream().map(UiEvent::toString).collect(Collectors.toList()));
+    }
+
+    @Test
+    void uiBatch_AnnouncesTheWinnersAfterTheBatchedUpdates() {
+        UiBatch batch = new UiBatch(ui);
+        batch.setScore(0, 3);
+        batch.announceWinner(new int[]{0});
+
+        InOrder order = inOrder(ui);
+        order.verify(ui).apply(events.capture());
+        order.verify(ui).announceWinner(new int[]{0});
+        assertEquals(Collections.singletonList("setting player 1 score to 3"),
+                events.getValue().stream().map(UiEvent::toString).collect(Collectors.toList()));
+        assertTrue(batch.isEmpty());
+    }
+
     static class MockUserInterface implements UserInterface {
         @Override
         public void dispose() {}